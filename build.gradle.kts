@@ -1,6 +1,7 @@
 plugins {
     java
     id("io.quarkus")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -28,6 +29,7 @@ dependencies {
     implementation("io.quarkus:quarkus-smallrye-fault-tolerance")
     implementation("io.quarkus:quarkus-micrometer-registry-prometheus")
     implementation("io.quarkus:quarkus-opentelemetry")
+    implementation("io.quarkus:quarkus-smallrye-health")
     implementation("io.quarkus:quarkus-awt")
     implementation("org.jsoup:jsoup:1.17.2")
 
@@ -48,11 +50,61 @@ java {
     targetCompatibility = JavaVersion.VERSION_21
 }
 
+// Vector API pixel kernels (see PixelKernels) are opt-in: -PvectorKernels=true compiles VectorPixelKernels
+// and adds the incubator module to compile, test, dev and jmh. Without it the scalar loops are used.
+val vectorKernels = findProperty("vectorKernels")?.toString() == "true"
+val vectorModule = if (vectorKernels) listOf("--add-modules", "jdk.incubator.vector") else emptyList()
+
+if (!vectorKernels) {
+    sourceSets.main {
+        java.exclude("dev/sf13/service/VectorPixelKernels.java")
+    }
+}
+
 tasks.withType<Test> {
     systemProperty("java.util.logging.manager", "org.jboss.logmanager.LogManager")
     jvmArgs("--add-opens", "java.base/java.lang=ALL-UNNAMED")
+    jvmArgs(vectorModule)
+}
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("loadtest")
+    }
+}
+
+// End-to-end load test against stub Wikipedia/AI servers, see README "Load testing".
+// Tunables are passed as -Ploadtest.<name>=<value> and forwarded as system properties.
+tasks.register<Test>("loadTest") {
+    description = "Runs the end-to-end load-test harness and writes build/reports/loadtest."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("loadtest")
+    }
+    shouldRunAfter(tasks.test)
+    outputs.upToDateWhen { false }
+    testLogging.showStandardStreams = true
+    project.properties
+        .filterKeys { it.startsWith("loadtest.") }
+        .forEach { (key, value) -> systemProperty(key, value.toString()) }
 }
+
 tasks.withType<JavaCompile> {
     options.encoding = "UTF-8"
     options.compilerArgs.add("-parameters")
+    options.compilerArgs.addAll(vectorModule)
+}
+
+tasks.quarkusDev {
+    jvmArguments.addAll(vectorModule)
+}
+
+// Pixel kernel benchmarks (src/jmh): ./gradlew jmh, results in build/results/jmh
+jmh {
+    jvmArgsAppend.addAll(vectorModule)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
 }
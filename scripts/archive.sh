@@ -0,0 +1,40 @@
+#!/usr/bin/env bash
+# Export or import the picture archive of a running instance, streaming to/from a zip file.
+#
+#   scripts/archive.sh export <base-url> <file.zip> [source] [from] [to]
+#   scripts/archive.sh import <base-url> <file.zip>
+#
+# e.g. seed a local instance from production:
+#   scripts/archive.sh export https://potd.example.org prod.zip
+#   scripts/archive.sh import http://localhost:9000 prod.zip
+set -euo pipefail
+
+usage() {
+    sed -n '4,5p' "$0" >&2
+    exit 2
+}
+
+[ $# -ge 3 ] || usage
+command=$1
+base=${2%/}
+file=$3
+
+case "$command" in
+    export)
+        query=""
+        [ -n "${4:-}" ] && query="${query}&source=$4"
+        [ -n "${5:-}" ] && query="${query}&from=$5"
+        [ -n "${6:-}" ] && query="${query}&to=$6"
+        curl --fail --show-error --no-buffer -o "$file" "$base/api/admin/archive?${query#&}"
+        echo "Wrote $file ($(wc -c < "$file") bytes)" >&2
+        ;;
+    import)
+        [ -f "$file" ] || { echo "No such file: $file" >&2; exit 1; }
+        # -T streams the file instead of reading it into memory like --data-binary would
+        curl --fail --show-error -X POST -H "Content-Type: application/zip" -T "$file" "$base/api/admin/archive"
+        echo >&2
+        ;;
+    *)
+        usage
+        ;;
+esac
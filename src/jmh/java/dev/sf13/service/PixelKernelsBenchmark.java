@@ -0,0 +1,81 @@
+package dev.sf13.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar vs Vector API pixel kernels, alone and inside a full dither of an 800x480 (TRMNL) frame.
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PixelKernelsBenchmark {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 480;
+
+    @Param({"scalar", "vector"})
+    String kernel;
+
+    @Param({"ORDERED", "THRESHOLD", "FLOYD_STEINBERG"})
+    DitherAlgorithm algorithm;
+
+    private PixelKernels kernels;
+    private GrayscaleDitherer ditherer;
+    private BufferedImage image;
+    private int[] rgb;
+    private float[] luma;
+    private float[] thresholds;
+    private int[] indices;
+
+    @Setup
+    public void setup() {
+        kernels = kernel.equals("scalar") ? PixelKernels.scalar() : PixelKernels.best();
+        if (kernel.equals("vector") && kernels == PixelKernels.scalar()) {
+            throw new IllegalStateException("jdk.incubator.vector is not available");
+        }
+        ditherer = new GrayscaleDitherer();
+        ditherer.kernels = kernels;
+
+        Random random = new Random(42);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        rgb = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] = random.nextInt(1 << 24);
+        }
+        image.setRGB(0, 0, WIDTH, HEIGHT, rgb, 0, WIDTH);
+        luma = new float[WIDTH * HEIGHT];
+        thresholds = new float[WIDTH];
+        indices = new int[WIDTH];
+    }
+
+    @Benchmark
+    public float[] luma() {
+        kernels.luma(rgb, luma, 0, rgb.length);
+        return luma;
+    }
+
+    @Benchmark
+    public int[] quantize() {
+        for (int y = 0; y < HEIGHT; y++) {
+            kernels.quantize(luma, y * WIDTH, thresholds, indices, WIDTH, 85f, 3);
+        }
+        return indices;
+    }
+
+    @Benchmark
+    public BufferedImage dither() {
+        return ditherer.dither(image, 2, algorithm, 1L);
+    }
+}
@@ -0,0 +1,21 @@
+package dev.sf13.dto;
+
+public class ArchiveImportResult {
+    // New pictures inserted
+    public long imported;
+    // Pictures already present with the same content hash
+    public long skipped;
+    // Pictures already present with different content; left untouched
+    public long conflicts;
+    // Image entries written into imported pictures
+    public long images;
+
+    public ArchiveImportResult() {}
+
+    public ArchiveImportResult(long imported, long skipped, long conflicts, long images) {
+        this.imported = imported;
+        this.skipped = skipped;
+        this.conflicts = conflicts;
+        this.images = images;
+    }
+}
@@ -0,0 +1,40 @@
+package dev.sf13.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One line of {@code metadata.ndjson} in an archive export: a {@link dev.sf13.entity.PictureOfTheDay}
+ * without its image columns, which travel as separate zip entries.
+ */
+@RegisterForReflection
+public class ArchiveRecord {
+    public String source;
+    public LocalDate date;
+    public String description;
+    public String shortDescription;
+    public String credit;
+    public String imageUrl;
+    public String sourceUrl;
+    public String contentHash;
+    public Long perceptualHash;
+    public LocalDateTime createdAt;
+
+    public ArchiveRecord() {}
+
+    public ArchiveRecord(String source, LocalDate date, String description, String shortDescription, String credit,
+                         String imageUrl, String sourceUrl, String contentHash, Long perceptualHash, LocalDateTime createdAt) {
+        this.source = source;
+        this.date = date;
+        this.description = description;
+        this.shortDescription = shortDescription;
+        this.credit = credit;
+        this.imageUrl = imageUrl;
+        this.sourceUrl = sourceUrl;
+        this.contentHash = contentHash;
+        this.perceptualHash = perceptualHash;
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,44 @@
+package dev.sf13.dto;
+
+import java.util.List;
+
+/**
+ * Manifest of a contact sheet: where each picture sits in the sprite at {@link #spriteUrl}.
+ */
+public class ContactSheetDTO {
+    public int tileSize;
+    public int columns;
+    public int rows;
+    public String spriteUrl;
+    public List<Tile> tiles;
+
+    public ContactSheetDTO() {}
+
+    public ContactSheetDTO(int tileSize, int columns, int rows, String spriteUrl, List<Tile> tiles) {
+        this.tileSize = tileSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.spriteUrl = spriteUrl;
+        this.tiles = tiles;
+    }
+
+    public static class Tile {
+        public String date;
+        public String shortDescription;
+        public String credit;
+        public int x;
+        public int y;
+        public String imageUrl;
+
+        public Tile() {}
+
+        public Tile(String date, String shortDescription, String credit, int x, int y, String imageUrl) {
+            this.date = date;
+            this.shortDescription = shortDescription;
+            this.credit = credit;
+            this.x = x;
+            this.y = y;
+            this.imageUrl = imageUrl;
+        }
+    }
+}
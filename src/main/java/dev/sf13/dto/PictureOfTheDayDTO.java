@@ -3,6 +3,7 @@ package dev.sf13.dto;
 import java.time.LocalDate;
 
 public class PictureOfTheDayDTO {
+    public String source;
     public LocalDate date;
     public String description;
     public String shortDescription;
@@ -13,8 +14,9 @@ public class PictureOfTheDayDTO {
 
     public PictureOfTheDayDTO() {}
 
-    public PictureOfTheDayDTO(LocalDate date, String description, String shortDescription,
+    public PictureOfTheDayDTO(String source, LocalDate date, String description, String shortDescription,
                               String credit, String imageUrl, String ditheredImageUrl, String trmnlImageUrl) {
+        this.source = source;
         this.date = date;
         this.description = description;
         this.shortDescription = shortDescription;
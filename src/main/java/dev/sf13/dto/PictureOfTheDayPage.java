@@ -0,0 +1,21 @@
+package dev.sf13.dto;
+
+import java.util.List;
+
+/**
+ * One page of the archive, newest first. {@link #nextBefore} and {@link #nextBeforeSource}
+ * (the key of the last item) are the cursor for the next page and are null on the last one.
+ */
+public class PictureOfTheDayPage {
+    public List<PictureOfTheDaySummary> items;
+    public String nextBefore;
+    public String nextBeforeSource;
+
+    public PictureOfTheDayPage() {}
+
+    public PictureOfTheDayPage(List<PictureOfTheDaySummary> items, String nextBefore, String nextBeforeSource) {
+        this.items = items;
+        this.nextBefore = nextBefore;
+        this.nextBeforeSource = nextBeforeSource;
+    }
+}
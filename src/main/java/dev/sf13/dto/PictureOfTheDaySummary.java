@@ -0,0 +1,26 @@
+package dev.sf13.dto;
+
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+import java.time.LocalDate;
+
+/**
+ * Projection of {@link dev.sf13.entity.PictureOfTheDay} without the image columns, for listings
+ * that must not pull the blobs out of the database.
+ */
+@RegisterForReflection
+public class PictureOfTheDaySummary {
+    public String source;
+    public LocalDate date;
+    public String shortDescription;
+    public String credit;
+
+    public PictureOfTheDaySummary() {}
+
+    public PictureOfTheDaySummary(String source, LocalDate date, String shortDescription, String credit) {
+        this.source = source;
+        this.date = date;
+        this.shortDescription = shortDescription;
+        this.credit = credit;
+    }
+}
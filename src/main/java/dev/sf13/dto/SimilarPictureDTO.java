@@ -0,0 +1,22 @@
+package dev.sf13.dto;
+
+import java.time.LocalDate;
+
+public class SimilarPictureDTO {
+    public String source;
+    public LocalDate date;
+    public String shortDescription;
+    public String credit;
+    // Hamming distance between the perceptual hashes, 0 = same picture
+    public int distance;
+
+    public SimilarPictureDTO() {}
+
+    public SimilarPictureDTO(String source, LocalDate date, String shortDescription, String credit, int distance) {
+        this.source = source;
+        this.date = date;
+        this.shortDescription = shortDescription;
+        this.credit = credit;
+        this.distance = distance;
+    }
+}
@@ -0,0 +1,23 @@
+package dev.sf13.dto;
+
+/**
+ * Layout of the deep-zoom tile pyramid of a picture. Level {@link #maxLevel} is the full
+ * resolution, every level below halves it, down to a single pixel at level 0.
+ */
+public class TilePyramidDTO {
+    public int width;
+    public int height;
+    public int tileSize;
+    public int maxLevel;
+    public String tileUrlTemplate;
+
+    public TilePyramidDTO() {}
+
+    public TilePyramidDTO(int width, int height, int tileSize, int maxLevel, String tileUrlTemplate) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.maxLevel = maxLevel;
+        this.tileUrlTemplate = tileUrlTemplate;
+    }
+}
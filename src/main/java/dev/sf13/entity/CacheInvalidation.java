@@ -0,0 +1,35 @@
+package dev.sf13.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One published change to the picture of {@link #source} on {@link #date}, stamped with the
+ * {@link CacheVersion} it was published under. Replicas poll the versions to keep their local
+ * caches coherent, see {@link dev.sf13.service.CacheCoherence}.
+ */
+@Entity
+@Table(name = "cache_invalidation", indexes = @Index(name = "idx_cache_invalidation_version", columnList = "version"))
+public class CacheInvalidation extends PanacheEntity {
+
+    @Column(nullable = false, length = 32)
+    @ColumnDefault("'en'")
+    public String source = PictureOfTheDay.DEFAULT_SOURCE;
+
+    @Column(nullable = false)
+    public LocalDate date;
+
+    public LocalDateTime createdAt;
+
+    // Not the id: ids are handed out from pooled blocks per JVM and are not in commit order
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    public long version;
+}
@@ -0,0 +1,57 @@
+package dev.sf13.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * The single-row version counter of {@link CacheInvalidation}, see {@link dev.sf13.service.CacheCoherence}.
+ * <p>
+ * Publishing bumps it with an update, whose row lock is held until the publishing transaction
+ * commits, so versions become visible in the order they were handed out: a replica that reads
+ * version {@code n} can rely on every invalidation up to {@code n} being committed.
+ */
+@Entity
+@Table(name = "cache_version")
+public class CacheVersion extends PanacheEntityBase {
+
+    public static final int ID = 1;
+
+    @Id
+    public int id = ID;
+
+    @Column(nullable = false)
+    public long version;
+
+    /**
+     * Takes the next version within the caller's transaction.
+     */
+    public static long next() {
+        if (update("version = version + 1 where id = ?1", ID) == 0) {
+            // Normally created at startup, see create()
+            CacheVersion counter = new CacheVersion();
+            counter.version = 1;
+            counter.persist();
+            return counter.version;
+        }
+        return latest();
+    }
+
+    /**
+     * Creates the counter row if there is none yet, so publishing transactions only ever update
+     * it and replicas starting together cannot conflict on its insert mid-publish.
+     */
+    public static void create() {
+        if (findById(ID) == null) {
+            new CacheVersion().persist();
+        }
+    }
+
+    public static long latest() {
+        return getEntityManager().createQuery("select version from CacheVersion where id = ?1", Long.class)
+                .setParameter(1, ID)
+                .getResultStream().findFirst().orElse(0L);
+    }
+}
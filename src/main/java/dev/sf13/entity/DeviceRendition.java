@@ -0,0 +1,44 @@
+package dev.sf13.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Lob;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+/**
+ * A picture pre-rendered for one device profile, stored as the exact bytes the device downloads.
+ */
+@Entity
+@Table(name = "device_rendition", uniqueConstraints = @UniqueConstraint(columnNames = {"picture_id", "profile"}))
+public class DeviceRendition extends PanacheEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    public PictureOfTheDay picture;
+
+    @Column(nullable = false)
+    public String profile;
+
+    // DeviceProfile#fingerprint() at render time; a mismatch means the profile changed since
+    @Column(nullable = false)
+    public String fingerprint;
+
+    public String contentType;
+
+    @Lob
+    public byte[] data;
+
+    public LocalDateTime createdAt;
+
+    public static DeviceRendition findByPictureAndProfile(PictureOfTheDay picture, String profile) {
+        return find("picture = ?1 and profile = ?2", picture, profile).firstResult();
+    }
+}
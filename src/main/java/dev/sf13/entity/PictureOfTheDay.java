@@ -3,16 +3,37 @@ package dev.sf13.entity;
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
 import jakarta.persistence.Lob;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import org.hibernate.annotations.ColumnDefault;
+
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "picture_of_the_day")
+// One picture per source and day. SchemaUpgrade drops the former unique constraint on date alone from existing databases.
+@Table(name = "picture_of_the_day",
+        uniqueConstraints = @UniqueConstraint(name = "uk_potd_source_date", columnNames = {"source", "date"}),
+        indexes = {
+        @Index(name = "idx_potd_image_url", columnList = "imageUrl"),
+        @Index(name = "idx_potd_content_hash", columnList = "contentHash"),
+        @Index(name = "idx_potd_phash_band0", columnList = "phashBand0"),
+        @Index(name = "idx_potd_phash_band1", columnList = "phashBand1"),
+        @Index(name = "idx_potd_phash_band2", columnList = "phashBand2"),
+        @Index(name = "idx_potd_phash_band3", columnList = "phashBand3")
+})
 public class PictureOfTheDay extends PanacheEntity {
 
-    @Column(unique = true, nullable = false)
+    // Key of the wikipedia.sources.* entry (a Wikipedia edition or Commons) the picture was featured on
+    public static final String DEFAULT_SOURCE = "en";
+
+    @Column(nullable = false, length = 32)
+    @ColumnDefault("'en'")
+    public String source = DEFAULT_SOURCE;
+
+    @Column(nullable = false)
     public LocalDate date;
 
     @Column(length = 5000)
@@ -25,23 +46,102 @@ public class PictureOfTheDay extends PanacheEntity {
 
     public String imageUrl;
 
+    // SHA-256 (hex) of originalImage
+    @Column(length = 64)
+    public String contentHash;
+
+    // The stored source image: the file at sourceUrl, which is the Wikimedia rendition of
+    // image.source.max-width px unless archival mode is on or there is none (then the original itself)
     @Lob
     public byte[] originalImage;
 
+    // URL originalImage was downloaded from; null for pictures stored before it was recorded.
+    // Wikimedia thumbnail URLs embed the file name twice, hence the length
+    @Column(length = 2048)
+    public String sourceUrl;
+
+    // dHash of the image (ImageService#perceptualHash), split into four indexed 16-bit bands:
+    // two hashes within Hamming distance 3 always share at least one band exactly
+    public Long perceptualHash;
+    public Integer phashBand0;
+    public Integer phashBand1;
+    public Integer phashBand2;
+    public Integer phashBand3;
+
+    // Downscaled copy of originalImage that all renditions are derived from
+    @Lob
+    public byte[] workingImage;
+
     @Lob
     public byte[] ditheredImage;
 
+    // Whether the working master and perceptual hash have been derived (or found unneeded or impossible);
+    // IngestBackfill only selects rows where this is false, which rows stored before it existed start out as
+    @Column(nullable = false)
+    @ColumnDefault("false")
+    public boolean masterChecked;
+
     public LocalDateTime createdAt;
 
+    /**
+     * Image to derive renditions from: the working master, or the original for rows that do
+     * not have one yet.
+     */
+    public byte[] renderSource() {
+        return workingImage != null ? workingImage : originalImage;
+    }
+
+    /**
+     * Whether originalImage is a reduced rendition rather than the file at imageUrl. Unknown for
+     * pictures without a sourceUrl, which are treated as originals.
+     */
+    public boolean storesReducedSource() {
+        return sourceUrl != null && !sourceUrl.equals(imageUrl);
+    }
+
+    public void updatePerceptualHash(long hash) {
+        perceptualHash = hash;
+        phashBand0 = band(hash, 0);
+        phashBand1 = band(hash, 1);
+        phashBand2 = band(hash, 2);
+        phashBand3 = band(hash, 3);
+    }
+
+    public static int band(long hash, int band) {
+        return (int) (hash >>> (16 * band)) & 0xFFFF;
+    }
+
+    /**
+     * Appends the {@code source} query parameter to an API link, unless it is the default source.
+     */
+    public static String withSource(String url, String source) {
+        if (source == null || DEFAULT_SOURCE.equals(source)) {
+            return url;
+        }
+        return url + (url.indexOf('?') < 0 ? "?source=" : "&source=") + source;
+    }
+
     public static PictureOfTheDay findByDate(LocalDate date) {
-        return find("date", date).firstResult();
+        return findByDate(DEFAULT_SOURCE, date);
+    }
+
+    public static PictureOfTheDay findByDate(String source, LocalDate date) {
+        return find("source = ?1 and date = ?2", source, date).firstResult();
     }
 
     public static PictureOfTheDay findByImageUrl(String imageUrl) {
         return find("imageUrl", imageUrl).firstResult();
     }
 
+    public static PictureOfTheDay findByContentHash(String contentHash) {
+        return find("contentHash", contentHash).firstResult();
+    }
+
     public static PictureOfTheDay findLatest() {
-        return find("order by date desc").firstResult();
+        return findLatest(DEFAULT_SOURCE);
+    }
+
+    public static PictureOfTheDay findLatest(String source) {
+        return find("source = ?1 order by date desc", source).firstResult();
     }
 }
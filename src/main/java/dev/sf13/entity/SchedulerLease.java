@@ -0,0 +1,34 @@
+package dev.sf13.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+import java.time.Instant;
+
+/**
+ * A named lease that at most one replica holds at a time, see {@link dev.sf13.service.LeaderLease}.
+ */
+@Entity
+@Table(name = "scheduler_lease")
+public class SchedulerLease extends PanacheEntityBase {
+
+    @Id
+    public String name;
+
+    @Column(nullable = false)
+    public String holder;
+
+    @Column(nullable = false)
+    public Instant acquiredAt;
+
+    @Column(nullable = false)
+    public Instant expiresAt;
+
+    // Concurrent acquisitions of the same row conflict on commit instead of both succeeding
+    @Version
+    public long version;
+}
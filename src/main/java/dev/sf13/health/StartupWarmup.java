@@ -0,0 +1,196 @@
+package dev.sf13.health;
+
+import dev.sf13.entity.PictureOfTheDay;
+import dev.sf13.service.ImagePipelineMetrics;
+import dev.sf13.service.ImageService;
+import dev.sf13.service.RenditionCache;
+import dev.sf13.service.RenditionFormat;
+import dev.sf13.service.SvgConverter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optional warm-up that runs once after startup and keeps the readiness check DOWN until done.
+ * <p>
+ * It renders the current picture through the real (cached) endpoints, so the first device
+ * requests hit warm caches, and then loops a few synthetic scale/dither/encode renders plus an
+ * SVG conversion so JIT, ImageIO plugins and Batik are loaded before traffic arrives.
+ * A failing step is logged and counted but never keeps the pod unready.
+ */
+@Readiness
+@ApplicationScoped
+public class StartupWarmup implements HealthCheck {
+
+    private static final Duration STEP_TIMEOUT = Duration.ofMinutes(2);
+    private static final String SVG_SAMPLE = "META-INF/resources/images/wiki_w_withwhite.svg";
+
+    enum State { DISABLED, PENDING, RUNNING, DONE }
+
+    @ConfigProperty(name = "warmup.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "warmup.iterations", defaultValue = "10")
+    int iterations;
+
+    @ConfigProperty(name = "warmup.renditions", defaultValue = "480,800,1280")
+    List<Integer> renditionWidths;
+
+    @Inject
+    RenditionCache renditions;
+
+    @Inject
+    ImageService imageService;
+
+    @Inject
+    SvgConverter svgConverter;
+
+    @Inject
+    ImagePipelineMetrics pipelineMetrics;
+
+    @Inject
+    MeterRegistry registry;
+
+    private volatile State state = State.PENDING;
+    private volatile long durationMillis;
+    private final AtomicInteger failedSteps = new AtomicInteger();
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            state = State.DISABLED;
+            return;
+        }
+        registry.gauge("warmup.completed", this, w -> w.state == State.DONE ? 1 : 0);
+        Infrastructure.getDefaultWorkerPool().execute(this::run);
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named("startup-warmup")
+                .status(state == State.DISABLED || state == State.DONE)
+                .withData("state", state.name())
+                .withData("durationMs", durationMillis)
+                .withData("failedSteps", failedSteps.get())
+                .build();
+    }
+
+    void run() {
+        state = State.RUNNING;
+        Log.info("Starting warm-up before reporting ready...");
+        long start = System.nanoTime();
+        ManagedContext requestContext = Arc.container().requestContext();
+        requestContext.activate();
+        try {
+            warmCurrentPicture();
+            warmPipeline();
+        } finally {
+            requestContext.terminate();
+            durationMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            registry.timer("warmup.duration").record(Duration.ofMillis(durationMillis));
+            state = State.DONE;
+            Log.infof("Warm-up finished in %d ms with %d failed steps.", durationMillis, failedSteps.get());
+        }
+    }
+
+    private void warmCurrentPicture() {
+        LocalDate date = QuarkusTransaction.requiringNew().call(() -> {
+            PictureOfTheDay potd = PictureOfTheDay.findByDate(LocalDate.now());
+            if (potd == null) {
+                potd = PictureOfTheDay.findLatest();
+            }
+            return potd == null ? null : potd.date;
+        });
+        if (date == null) {
+            Log.info("Warm-up: no picture in the database yet, skipping endpoint warm-up.");
+            return;
+        }
+        String dateStr = date.toString();
+        String source = PictureOfTheDay.DEFAULT_SOURCE;
+        step("trmnl", () -> renditions.trmnl(dateStr, 1, RenditionFormat.PNG, source).await().atMost(STEP_TIMEOUT));
+        step("details", () -> renditions.describe(dateStr, source).await().atMost(STEP_TIMEOUT));
+        for (Integer width : renditionWidths) {
+            step("rendition", () -> renditions.scaled(dateStr, width, source).await().atMost(STEP_TIMEOUT));
+        }
+    }
+
+    private void warmPipeline() {
+        ImagePipelineMetrics.Pipeline pipeline = pipelineMetrics.pipeline("warmup", "synthetic");
+        byte[] sample = syntheticJpeg(1600, 1067);
+        step("pipeline", () -> {
+            for (int i = 0; i < iterations; i++) {
+                imageService.scaleImage(sample, 800, null, pipeline);
+                byte[] cover = imageService.scaleImageAndCenter(sample, 800, 480, pipeline);
+                imageService.ditherImage(cover, pipeline);
+            }
+            return null;
+        });
+        step("svg", () -> {
+            try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(SVG_SAMPLE)) {
+                if (in != null) {
+                    svgConverter.convertSvgToPng(in.readAllBytes());
+                }
+            }
+            return null;
+        });
+    }
+
+    private void step(String name, WarmupStep step) {
+        Timer.Sample sample = Timer.start(registry);
+        String result = "success";
+        try {
+            step.run();
+        } catch (Exception e) {
+            result = "failure";
+            failedSteps.incrementAndGet();
+            Log.warnf(e, "Warm-up step '%s' failed", name);
+        }
+        sample.stop(registry.timer("warmup.step.duration", "step", name, "result", result));
+    }
+
+    private static byte[] syntheticJpeg(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.DARK_GRAY, width, height, Color.ORANGE));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.WHITE);
+        g.fillOval(width / 4, height / 4, width / 2, height / 2);
+        g.dispose();
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ImageIO.write(img, "jpg", baos);
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode warm-up sample", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface WarmupStep {
+        Object run() throws Exception;
+    }
+}
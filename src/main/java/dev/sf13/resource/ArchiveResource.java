@@ -0,0 +1,67 @@
+package dev.sf13.resource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import dev.sf13.dto.ArchiveImportResult;
+import dev.sf13.service.ArchiveService;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.zip.ZipException;
+
+/**
+ * Bulk export and import of the archive, see {@link ArchiveService} for the format and
+ * {@code scripts/archive.sh} for a command line client. Both directions stream, so neither
+ * the response nor the upload is ever held in memory.
+ */
+@Path("/api/admin/archive")
+public class ArchiveResource {
+
+    private static final String APPLICATION_ZIP = "application/zip";
+
+    @Inject
+    ArchiveService archive;
+
+    @GET
+    @Produces(APPLICATION_ZIP)
+    public Response export(@QueryParam("source") String source,
+                           @QueryParam("from") String from,
+                           @QueryParam("to") String to) {
+        ArchiveService.Filter filter;
+        try {
+            filter = new ArchiveService.Filter(source == null || source.isBlank() ? null : source,
+                    from == null || from.isBlank() ? null : LocalDate.parse(from),
+                    to == null || to.isBlank() ? null : LocalDate.parse(to));
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid date format. Use YYYY-MM-DD");
+        }
+        StreamingOutput body = out -> archive.export(filter, out);
+        return Response.ok(body, APPLICATION_ZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"potd-archive-" + LocalDate.now() + ".zip\"")
+                .build();
+    }
+
+    @POST
+    @Consumes(APPLICATION_ZIP)
+    @Produces(MediaType.APPLICATION_JSON)
+    public ArchiveImportResult importArchive(InputStream body) throws IOException {
+        try {
+            return archive.importArchive(body);
+        } catch (ZipException | JsonProcessingException | IllegalArgumentException e) {
+            throw new BadRequestException("Malformed archive: " + e.getMessage());
+        }
+    }
+}
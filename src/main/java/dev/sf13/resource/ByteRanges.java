@@ -0,0 +1,131 @@
+package dev.sf13.resource;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+/**
+ * Single-range {@code Range}/{@code If-Range} support (RFC 9110, section 14) for image responses.
+ * <p>
+ * Every response advertises {@code Accept-Ranges: bytes} and a strong {@code ETag}, which the
+ * caller computes once per representation (when it is stored or cached), never per request. A
+ * {@code Range} request whose {@code If-Range} (if any) matches that tag gets a 206 with just
+ * the requested bytes, or a 416 when the range starts past the end. Multiple ranges, malformed
+ * headers and {@code If-Range} dates are answered with the full representation, as the RFC
+ * allows.
+ */
+final class ByteRanges {
+
+    static final String RANGE = "Range";
+    static final String IF_RANGE = "If-Range";
+    static final String ACCEPT_RANGES = "Accept-Ranges";
+    static final String CONTENT_RANGE = "Content-Range";
+
+    /**
+     * Writes {@code length} bytes of the representation starting at {@code start}.
+     */
+    @FunctionalInterface
+    interface Body {
+        StreamingOutput slice(long start, long length);
+    }
+
+    /**
+     * A satisfiable range, inclusive on both ends.
+     */
+    record Slice(long start, long end) {
+        static final Slice UNSATISFIABLE = new Slice(-1, -1);
+
+        long length() {
+            return end - start + 1;
+        }
+
+        /**
+         * Parses {@code bytes=first-last}, {@code bytes=first-} or {@code bytes=-suffix}. Returns
+         * {@code null} when the whole representation should be sent.
+         */
+        static Slice parse(String header, long total) {
+            if (header == null || !header.regionMatches(true, 0, "bytes=", 0, 6) || header.indexOf(',') >= 0) {
+                return null;
+            }
+            String spec = header.substring(6).trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0 || total == 0) {
+                        return UNSATISFIABLE;
+                    }
+                    return new Slice(Math.max(0, total - suffix), total - 1);
+                }
+                long first = Long.parseLong(spec.substring(0, dash));
+                long last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                if (first < 0 || last < first) {
+                    return null;
+                }
+                if (first >= total) {
+                    return UNSATISFIABLE;
+                }
+                return new Slice(first, Math.min(last, total - 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private ByteRanges() {
+    }
+
+    /**
+     * Applies the range headers to a buffered (typically cached) 200 response with a
+     * {@code byte[]} entity whose strong validator is {@code etag}. The given response is never
+     * modified, so it can be shared.
+     */
+    static Response buffered(Response full, String etag, String range, String ifRange) {
+        if (full.getStatus() != Response.Status.OK.getStatusCode() || !(full.getEntity() instanceof byte[] data)) {
+            return full;
+        }
+        Response.ResponseBuilder response = Response.fromResponse(full);
+        Slice slice = select(response, range, ifRange, etag, data.length);
+        if (slice == null) {
+            return response.build();
+        }
+        return respond(response, slice, data.length, (start, length) -> out -> out.write(data, (int) start, (int) length));
+    }
+
+    /**
+     * Builds the response for a representation of {@code total} bytes that is streamed from
+     * elsewhere: all of it, the requested range or a 416.
+     */
+    static Response streamed(Response.ResponseBuilder response, String range, String ifRange, String etag, long total, Body body) {
+        Slice slice = select(response, range, ifRange, etag, total);
+        if (slice == null) {
+            return response.entity(body.slice(0, total)).build();
+        }
+        return respond(response, slice, total, body);
+    }
+
+    private static Slice select(Response.ResponseBuilder response, String range, String ifRange, String etag, long total) {
+        response.header(ACCEPT_RANGES, "bytes").header(HttpHeaders.ETAG, etag);
+        // A stale If-Range means the client's partial copy is of another version: send it all
+        if (ifRange != null && !ifRange.trim().equals(etag)) {
+            return null;
+        }
+        return Slice.parse(range, total);
+    }
+
+    private static Response respond(Response.ResponseBuilder response, Slice slice, long total, Body body) {
+        if (slice == Slice.UNSATISFIABLE) {
+            return response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .entity(null)
+                    .header(CONTENT_RANGE, "bytes */" + total)
+                    .build();
+        }
+        return response.status(Response.Status.PARTIAL_CONTENT)
+                .entity(body.slice(slice.start(), slice.length()))
+                .header(CONTENT_RANGE, "bytes " + slice.start() + "-" + slice.end() + "/" + total)
+                .build();
+    }
+}
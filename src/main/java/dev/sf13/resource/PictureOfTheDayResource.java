@@ -1,53 +1,158 @@
 package dev.sf13.resource;
 
+import dev.sf13.dto.ContactSheetDTO;
 import dev.sf13.dto.PictureOfTheDayDTO;
+import dev.sf13.dto.PictureOfTheDayPage;
+import dev.sf13.dto.PictureOfTheDaySummary;
+import dev.sf13.dto.SimilarPictureDTO;
+import dev.sf13.dto.TilePyramidDTO;
 import dev.sf13.entity.PictureOfTheDay;
+import dev.sf13.service.ContactSheetService;
+import dev.sf13.service.DeviceProfileRegistry;
+import dev.sf13.service.GrayscaleDitherer;
+import dev.sf13.service.OriginalImageStore;
+import dev.sf13.service.RenditionCache;
+import dev.sf13.service.RenditionFormat;
+import dev.sf13.service.SimilarityIndex;
+import dev.sf13.service.TileService;
 import dev.sf13.service.WikipediaScraper;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
 import io.quarkus.cache.CacheResult;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.List;
 
 @Path("/api/potd")
 public class PictureOfTheDayResource {
     private static final Logger LOG = Logger.getLogger(PictureOfTheDayResource.class);
 
+    @ConfigProperty(name = "potd.list.max-limit", defaultValue = "500")
+    int maxListLimit;
+
     @Inject
     WikipediaScraper scraper;
 
     @Inject
-    dev.sf13.service.ImageService imageService;
+    MeterRegistry registry;
 
     @Inject
-    MeterRegistry registry;
+    DeviceProfileRegistry deviceProfiles;
+
+    @Inject
+    RenditionCache renditions;
+
+    @Inject
+    ContactSheetService contactSheets;
+
+    @Inject
+    TileService tiles;
+
+    @Inject
+    SimilarityIndex similarityIndex;
+
+    @Inject
+    OriginalImageStore originals;
+
+    private static void checkBitDepth(int bits) {
+        if (!GrayscaleDitherer.isSupportedBitDepth(bits)) {
+            throw new BadRequestException("bits must be 1, 2 or 4");
+        }
+    }
+
+    private static RenditionFormat parseFormat(String format) {
+        try {
+            return RenditionFormat.parse(format);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("format must be png or raw");
+        }
+    }
+
+    /**
+     * Lists the archive of one source newest first using keyset pagination on the unique
+     * (date, source) key: every page is a range scan of the (source, date) index of
+     * {@code limit + 1} rows, however deep into the history it is. {@code beforeSource} defaults
+     * to the listed source, so a bare {@code before} date is a complete cursor too.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> list(@QueryParam("before") @DefaultValue("") String beforeStr,
+                              @QueryParam("beforeSource") @DefaultValue("") String beforeSourceStr,
+                              @QueryParam("limit") @DefaultValue("30") int limit,
+                              @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source) {
+        registry.counter("potd.requests", Tags.of("type", "list")).increment();
+        if (limit < 1 || limit > maxListLimit) {
+            return Uni.createFrom().failure(new BadRequestException("limit must be between 1 and " + maxListLimit));
+        }
+        LocalDate before;
+        try {
+            before = beforeStr.isBlank() ? null : LocalDate.parse(beforeStr);
+        } catch (DateTimeParseException e) {
+            return Uni.createFrom().failure(new BadRequestException("Invalid date format. Use YYYY-MM-DD"));
+        }
+        String beforeSource = beforeSourceStr.isBlank() ? source : beforeSourceStr;
+        return Uni.createFrom().item(() -> {
+            // One extra row tells whether there is a next page without a count query
+            List<PictureOfTheDaySummary> items = QuarkusTransaction.requiringNew().call(() -> (before == null
+                    ? PictureOfTheDay.find("source = ?1 order by date desc, source desc", source)
+                    : PictureOfTheDay.find("source = ?1 and (date < ?2 or (date = ?2 and source < ?3)) order by date desc, source desc",
+                            source, before, beforeSource))
+                    .project(PictureOfTheDaySummary.class)
+                    .page(0, limit + 1)
+                    .list());
+            String nextBefore = null;
+            String nextBeforeSource = null;
+            if (items.size() > limit) {
+                items = items.subList(0, limit);
+                PictureOfTheDaySummary last = items.get(limit - 1);
+                nextBefore = last.date.toString();
+                nextBeforeSource = last.source;
+            }
+            Response.ResponseBuilder response = Response.ok(new PictureOfTheDayPage(items, nextBefore, nextBeforeSource));
+            if (nextBefore != null) {
+                String next = PictureOfTheDay.withSource("/api/potd?before=" + nextBefore + "&beforeSource=" + nextBeforeSource
+                        + "&limit=" + limit, source);
+                response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            }
+            return response.build();
+        }).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool());
+    }
 
     @GET
     @Path("/today")
     @Produces(MediaType.APPLICATION_JSON)
     @Transactional
-    public Uni<PictureOfTheDayDTO> getToday() {
+    public Uni<PictureOfTheDayDTO> getToday(@QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source) {
         registry.counter("potd.requests", Tags.of("type", "today")).increment();
         LOG.info("GET /api/potd/today");
         LocalDate today = LocalDate.now();
         return Uni.createFrom().item(() -> {
-            PictureOfTheDay potd = PictureOfTheDay.findByDate(today);
+            PictureOfTheDay potd = PictureOfTheDay.findByDate(source, today);
             if (potd == null) {
                 LOG.warnf("POTD for today (%s) not found. Attempting fallback to latest available image.", today);
-                potd = PictureOfTheDay.findLatest();
+                potd = PictureOfTheDay.findLatest(source);
                 if (potd != null) {
                     LOG.infof("Fallback successful. Serving POTD from %s", potd.date);
                 } else {
@@ -61,13 +166,14 @@ public class PictureOfTheDayResource {
                 return null;
             }
             return new PictureOfTheDayDTO(
+                potd.source,
                 potd.date,
                 potd.description,
                 potd.shortDescription,
                 potd.credit,
-                "/api/potd/" + potd.date.toString() + "/image",
-                "/api/potd/" + potd.date.toString() + "/image/dithered",
-                    "/api/potd/today/trmnl"
+                PictureOfTheDay.withSource("/api/potd/" + potd.date.toString() + "/image", source),
+                PictureOfTheDay.withSource("/api/potd/" + potd.date.toString() + "/image/dithered", source),
+                PictureOfTheDay.withSource("/api/potd/today/trmnl", source)
             );
         }).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool());
     }
@@ -75,139 +181,138 @@ public class PictureOfTheDayResource {
     @GET
     @Path("/{date}")
     @Produces(MediaType.APPLICATION_JSON)
-    @Transactional
-    @CacheResult(cacheName = "potd-date")
-    public Uni<PictureOfTheDayDTO> getByDate(@PathParam("date") String dateStr) {
+    public Uni<PictureOfTheDayDTO> getByDate(@PathParam("date") String dateStr,
+                                             @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source) {
         registry.counter("potd.requests", Tags.of("type", "date")).increment();
-        LocalDate date;
         try {
-            date = LocalDate.parse(dateStr);
-        } catch (java.time.format.DateTimeParseException e) {
+            LocalDate.parse(dateStr);
+        } catch (DateTimeParseException e) {
             LOG.errorf("Invalid date format received: %s", dateStr);
-            return Uni.createFrom().failure(new jakarta.ws.rs.BadRequestException("Invalid date format. Use YYYY-MM-DD"));
+            return Uni.createFrom().failure(new BadRequestException("Invalid date format. Use YYYY-MM-DD"));
         }
-
-        final LocalDate finalDate = date;
-        LOG.info("GET /api/potd/" + finalDate);
-        return Uni.createFrom().item(() -> {
-            PictureOfTheDay potd = PictureOfTheDay.findByDate(finalDate);
-            if (potd == null) {
-                LOG.warnf("POTD not found for date: %s", finalDate);
-                return null;
-            }
-            return new PictureOfTheDayDTO(
-                potd.date,
-                potd.description,
-                potd.shortDescription,
-                potd.credit,
-                "/api/potd/" + finalDate.toString() + "/image",
-                "/api/potd/" + finalDate.toString() + "/image/dithered",
-                    "/api/potd/today/trmnl"
-            );
-        }).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool());
+        LOG.info("GET /api/potd/" + dateStr);
+        return renditions.describe(dateStr, source);
     }
 
+    /**
+     * The stored source image, streamed from the database (see {@link OriginalImageStore}) rather
+     * than cached, with {@code Range} support so interrupted downloads can resume. Runs on a
+     * worker thread, which the streamed body is written from as well.
+     * <p>
+     * Unless archival mode is on this is the reduced Wikimedia rendition downloaded at ingest; the
+     * response then links the full original with {@code rel="original"}.
+     */
     @GET
     @Path("/{date}/image")
     @Produces("image/png")
-    @CacheResult(cacheName = "potd-image")
-    @Transactional
-    public Uni<Response> getImage(@PathParam("date") String dateStr) {
-         return getImageScaled(dateStr, null, null);
+    public Response getImage(@PathParam("date") String dateStr,
+                             @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                             @HeaderParam(ByteRanges.RANGE) String range,
+                             @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
+        LocalDate date = LocalDate.parse(dateStr);
+        OriginalImageStore.Stored stored = originals.describe(source, date);
+        if (stored == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        // contentHash is the SHA-256 of the stored image; rows without one fall back to id and size
+        String etag = "\"" + (stored.contentHash() != null ? stored.contentHash() : stored.id() + "-" + stored.length()) + "\"";
+        Response.ResponseBuilder ok = Response.ok();
+        if (stored.originalUrl() != null) {
+            ok.header(HttpHeaders.LINK, "<" + stored.originalUrl() + ">; rel=\"original\"");
+        }
+        Response response = ByteRanges.streamed(ok, range, ifRange, etag, stored.length(),
+                (start, length) -> out -> originals.copy(stored, start, length, out));
+        registry.counter("potd.range.requests", Tags.of("type", "original", "status", String.valueOf(response.getStatus()))).increment();
+        return response;
     }
 
     @GET
     @Path("/{date}/{width}/image")
     @Produces("image/png")
-    @CacheResult(cacheName = "potd-image-scaled-w")
-    @Transactional
-    public Uni<Response> getImageWidth(@PathParam("date") String dateStr, @PathParam("width") Integer width) {
-        return getImageScaled(dateStr, width, null);
+    public Uni<Response> getImageWidth(@PathParam("date") String dateStr, @PathParam("width") Integer width,
+                                       @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                                       @HeaderParam(ByteRanges.RANGE) String range,
+                                       @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
+        return ranged(renditions.scaled(dateStr, width, source), range, ifRange);
     }
 
     @GET
     @Path("/{date}/{width}/{height}/image")
     @Produces("image/png")
-    @CacheResult(cacheName = "potd-image-scaled-wh")
-    @Transactional
-    public Uni<Response> getImageWidthHeight(@PathParam("date") String dateStr, @PathParam("width") Integer width, @PathParam("height") Integer height) {
-        return getImageScaled(dateStr, width, height);
+    public Uni<Response> getImageWidthHeight(@PathParam("date") String dateStr, @PathParam("width") Integer width, @PathParam("height") Integer height,
+                                             @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                                             @HeaderParam(ByteRanges.RANGE) String range,
+                                             @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
+        return ranged(renditions.scaled(dateStr, width, height, source), range, ifRange);
     }
 
-    private Uni<Response> getImageScaled(String dateStr, Integer width, Integer height) {
-        LocalDate date = LocalDate.parse(dateStr);
-        return Uni.createFrom().item(() -> {
-            PictureOfTheDay potd = PictureOfTheDay.findByDate(date);
-            if (potd != null && potd.originalImage != null) {
-                try {
-                    byte[] data = imageService.scaleImage(potd.originalImage, width, height);
-                    return Response.ok(data).build();
-                } catch (java.io.IOException e) {
-                    LOG.error("Error scaling image", e);
-                    return Response.serverError().build();
-                }
-            }
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool());
+    /**
+     * Answers {@code Range} requests from the buffered (cached) rendition. Applied outside the
+     * cache, so it only ever holds the full image.
+     */
+    private static Uni<Response> ranged(Uni<RenditionCache.Rendered> rendered, String range, String ifRange) {
+        return rendered.map(image -> image == null
+                ? Response.status(Response.Status.NOT_FOUND).build()
+                : ByteRanges.buffered(Response.ok(image.data(), image.contentType()).build(), image.etag(), range, ifRange));
     }
 
     @GET
     @Path("/{date}/image/dithered")
-    @Produces("image/png")
-    @CacheResult(cacheName = "potd-image-dithered")
-    @Transactional
-    public Uni<Response> getDitheredImage(@PathParam("date") String dateStr) {
-        return getDitheredImageScaled(dateStr, null, null);
+    @Produces({"image/png", MediaType.APPLICATION_OCTET_STREAM})
+    public Uni<Response> getDitheredImage(@PathParam("date") String dateStr,
+                                          @QueryParam("bits") @DefaultValue("1") int bits,
+                                          @QueryParam("format") @DefaultValue("png") String format,
+                                          @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                                          @HeaderParam(ByteRanges.RANGE) String range,
+                                          @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
+        checkBitDepth(bits);
+        return ranged(renditions.dithered(dateStr, bits, parseFormat(format), source), range, ifRange);
     }
 
     @GET
     @Path("/{date}/{width}/image/dithered")
-    @Produces("image/png")
-    @CacheResult(cacheName = "potd-image-dithered-scaled-w")
-    @Transactional
-    public Uni<Response> getDitheredImageWidth(@PathParam("date") String dateStr, @PathParam("width") Integer width) {
-        return getDitheredImageScaled(dateStr, width, null);
+    @Produces({"image/png", MediaType.APPLICATION_OCTET_STREAM})
+    public Uni<Response> getDitheredImageWidth(@PathParam("date") String dateStr, @PathParam("width") Integer width,
+                                               @QueryParam("bits") @DefaultValue("1") int bits,
+                                               @QueryParam("format") @DefaultValue("png") String format,
+                                               @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                                               @HeaderParam(ByteRanges.RANGE) String range,
+                                               @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
+        checkBitDepth(bits);
+        return ranged(renditions.dithered(dateStr, width, bits, parseFormat(format), source), range, ifRange);
     }
 
     @GET
     @Path("/{date}/{width}/{height}/image/dithered")
-    @Produces("image/png")
-    @CacheResult(cacheName = "potd-image-dithered-scaled-wh")
-    @Transactional
-    public Uni<Response> getDitheredImageWidthHeight(@PathParam("date") String dateStr, @PathParam("width") Integer width, @PathParam("height") Integer height) {
-        return getDitheredImageScaled(dateStr, width, height);
-    }
-
-    private Uni<Response> getDitheredImageScaled(String dateStr, Integer width, Integer height) {
-        LocalDate date = LocalDate.parse(dateStr);
-        return Uni.createFrom().item(() -> {
-            PictureOfTheDay potd = PictureOfTheDay.findByDate(date);
-            if (potd != null && potd.ditheredImage != null) {
-                try {
-                    byte[] data = imageService.scaleImage(potd.ditheredImage, width, height);
-                    return Response.ok(data).build();
-                } catch (java.io.IOException e) {
-                    LOG.error("Error scaling image", e);
-                    return Response.serverError().build();
-                }
-            }
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool());
+    @Produces({"image/png", MediaType.APPLICATION_OCTET_STREAM})
+    public Uni<Response> getDitheredImageWidthHeight(@PathParam("date") String dateStr, @PathParam("width") Integer width, @PathParam("height") Integer height,
+                                                     @QueryParam("bits") @DefaultValue("1") int bits,
+                                                     @QueryParam("format") @DefaultValue("png") String format,
+                                                     @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                                                     @HeaderParam(ByteRanges.RANGE) String range,
+                                                     @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
+        checkBitDepth(bits);
+        return ranged(renditions.dithered(dateStr, width, height, bits, parseFormat(format), source), range, ifRange);
     }
 
     @GET
     @Path("/today/trmnl")
-    @Produces("image/png")
-    @Transactional
-    public Uni<Response> getTrmnlImage() {
+    @Produces({"image/png", MediaType.APPLICATION_OCTET_STREAM})
+    public Uni<Response> getTrmnlImage(@QueryParam("bits") @DefaultValue("1") int bits,
+                                       @QueryParam("format") @DefaultValue("png") String format,
+                                       @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                                       @HeaderParam(ByteRanges.RANGE) String range,
+                                       @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
         registry.counter("potd.requests", Tags.of("type", "trmnl")).increment();
         LOG.info("GET /api/potd/today/trmnl");
-        return Uni.createFrom().item(() -> {
+        checkBitDepth(bits);
+        RenditionFormat renditionFormat = parseFormat(format);
+        return Uni.createFrom().item(() -> QuarkusTransaction.requiringNew().call(() -> {
             LocalDate today = LocalDate.now();
-            PictureOfTheDay potd = PictureOfTheDay.findByDate(today);
+            PictureOfTheDay potd = PictureOfTheDay.findByDate(source, today);
             if (potd == null) {
                 LOG.warnf("TRMNL Request: POTD for today (%s) not found. Checking for latest.", today);
-                potd = PictureOfTheDay.findLatest();
+                potd = PictureOfTheDay.findLatest(source);
             }
             if (potd != null) {
                 LOG.infof("TRMNL Request: Serving POTD from date %s", potd.date);
@@ -215,40 +320,215 @@ public class PictureOfTheDayResource {
             }
             LOG.error("TRMNL Request: No POTD found.");
             return null;
-        }).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool())
+        })).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool())
           .flatMap(dateStr -> {
               if (dateStr == null) {
                   return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
               }
-              return getTrmnlImageByDate(dateStr);
+              return ranged(renditions.trmnl(dateStr, bits, renditionFormat, source), range, ifRange);
           });
     }
 
-    @CacheResult(cacheName = "potd-trmnl-date")
-    @Transactional
-    public Uni<Response> getTrmnlImageByDate(String dateStr) {
-        LOG.debugf("Generating/Retrieving cached TRMNL image for date: %s", dateStr);
+    @GET
+    @Path("/{date}/device/{profile}")
+    @Produces({"image/png", MediaType.APPLICATION_OCTET_STREAM})
+    public Uni<Response> getDeviceImage(@PathParam("date") String dateStr, @PathParam("profile") String profileName,
+                                        @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                                        @HeaderParam(ByteRanges.RANGE) String range,
+                                        @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
+        registry.counter("potd.requests", Tags.of("type", "device")).increment();
+        if (deviceProfiles.find(profileName).isEmpty()) {
+            throw new NotFoundException("Unknown device profile: " + profileName);
+        }
+        return ranged(renditions.device(dateStr, profileName, source), range, ifRange);
+    }
+
+    @GET
+    @Path("/{date}/similar")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<List<SimilarPictureDTO>> getSimilar(@PathParam("date") String dateStr,
+                                                   @QueryParam("maxDistance") @DefaultValue("-1") int maxDistance,
+                                                   @QueryParam("limit") @DefaultValue("20") int limit,
+                                                   @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source) {
+        registry.counter("potd.requests", Tags.of("type", "similar")).increment();
         LocalDate date = LocalDate.parse(dateStr);
+        int distance = maxDistance < 0 ? similarityIndex.defaultMaxDistance() : maxDistance;
+        if (distance > 64 || limit < 1 || limit > maxListLimit) {
+            throw new BadRequestException("maxDistance must be at most 64 and limit between 1 and " + maxListLimit);
+        }
+        return Uni.createFrom().item(() -> QuarkusTransaction.requiringNew().call(() -> {
+            PictureOfTheDay potd = PictureOfTheDay.findByDate(source, date);
+            if (potd == null) {
+                throw new NotFoundException();
+            }
+            if (potd.perceptualHash == null) {
+                return List.<SimilarPictureDTO>of();
+            }
+            return similarityIndex.findSimilar(potd.perceptualHash, distance, limit + 1).stream()
+                    .filter(match -> match.id() != potd.id)
+                    .limit(limit)
+                    .map(match -> new SimilarPictureDTO(match.source(), match.date(), match.shortDescription(), match.credit(), match.distance()))
+                    .toList();
+        })).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool());
+    }
+
+    @GET
+    @Path("/{date}/region")
+    @Produces("image/jpeg")
+    public Uni<Response> getRegion(@PathParam("date") String dateStr,
+                                   @QueryParam("x") @DefaultValue("0") int x,
+                                   @QueryParam("y") @DefaultValue("0") int y,
+                                   @QueryParam("w") int w,
+                                   @QueryParam("h") int h,
+                                   @QueryParam("scale") @DefaultValue("1") double scale,
+                                   @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                                   @HeaderParam(ByteRanges.RANGE) String range,
+                                   @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
+        registry.counter("potd.requests", Tags.of("type", "region")).increment();
+        LocalDate date = LocalDate.parse(dateStr);
+        if (w <= 0 || h <= 0) {
+            throw new BadRequestException("w and h must be positive");
+        }
+        if (!(scale > 0 && scale <= 1)) {
+            throw new BadRequestException("scale must be in (0, 1]");
+        }
         return Uni.createFrom().item(() -> {
-            PictureOfTheDay potd = PictureOfTheDay.findByDate(date);
-            if (potd != null && potd.originalImage != null) {
-                try {
-                    // Scale to 800x480 first, preserving aspect ratio
-                    byte[] scaled = imageService.scaleImageAndCenter(potd.originalImage, 800, 480);
-                    // Then dither
-                    byte[] dithered = imageService.ditherImage(scaled);
-                    LOG.infof("TRMNL image generated for date: %s", dateStr);
-                    return Response.ok(dithered).build();
-                } catch (java.io.IOException e) {
-                    LOG.error("Error generating TRMNL image", e);
-                    return Response.serverError().build();
+            try {
+                byte[] data = tiles.region(source, date, x, y, w, h, scale);
+                if (data == null) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
                 }
+                String etag = tiles.etag(source, date, "region-" + x + "-" + y + "-" + w + "-" + h + "-" + scale);
+                return ByteRanges.buffered(Response.ok(data, "image/jpeg").build(), etag, range, ifRange);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            } catch (java.io.IOException e) {
+                LOG.errorf(e, "Error rendering region of %s", date);
+                return Response.serverError().build();
+            }
+        }).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool());
+    }
+
+    @GET
+    @Path("/{date}/tiles")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<TilePyramidDTO> getTilePyramid(@PathParam("date") String dateStr,
+                                              @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source) {
+        LocalDate date = LocalDate.parse(dateStr);
+        return Uni.createFrom().item(() -> {
+            try {
+                TilePyramidDTO pyramid = tiles.describe(source, date);
+                if (pyramid == null) {
+                    throw new NotFoundException();
+                }
+                return pyramid;
+            } catch (java.io.IOException e) {
+                throw new jakarta.ws.rs.InternalServerErrorException(e);
+            }
+        }).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool());
+    }
+
+    @GET
+    @Path("/{date}/tiles/{z}/{x}/{y}")
+    @Produces("image/jpeg")
+    public Uni<Response> getTile(@PathParam("date") String dateStr, @PathParam("z") int z,
+                                 @PathParam("x") int x, @PathParam("y") int y,
+                                 @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                                 @HeaderParam(ByteRanges.RANGE) String range,
+                                 @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
+        registry.counter("potd.requests", Tags.of("type", "tile")).increment();
+        LocalDate date = LocalDate.parse(dateStr);
+        return Uni.createFrom().item(() -> {
+            try {
+                byte[] data = tiles.tile(source, date, z, x, y);
+                if (data == null) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+                String etag = tiles.etag(source, date, "tile-" + z + "-" + x + "-" + y);
+                return ByteRanges.buffered(Response.ok(data, "image/jpeg").build(), etag, range, ifRange);
+            } catch (java.io.IOException e) {
+                LOG.errorf(e, "Error rendering tile %d/%d/%d of %s", z, x, y, date);
+                return Response.serverError().build();
             }
-            LOG.warnf("TRMNL image generation failed. POTD or image data missing for date: %s", dateStr);
-            return Response.status(Response.Status.NOT_FOUND).build();
         }).runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool());
     }
 
+    @GET
+    @Path("/contact-sheet")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<ContactSheetDTO> getContactSheet(@QueryParam("from") @DefaultValue("") String from,
+                                                @QueryParam("to") @DefaultValue("") String to,
+                                                @QueryParam("dates") @DefaultValue("") String dates,
+                                                @QueryParam("tile") @DefaultValue("160") int tile,
+                                                @QueryParam("columns") @DefaultValue("0") int columns,
+                                                @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source) {
+        registry.counter("potd.requests", Tags.of("type", "contact-sheet")).increment();
+        ContactSheetService.Selection selection = parseSelection(source, from, to, dates);
+        checkContactSheet(tile, columns);
+        String spriteUrl = PictureOfTheDay.withSource("/api/potd/contact-sheet/image?" + (selection.dates() != null
+                ? "dates=" + dates
+                : "from=" + selection.from() + "&to=" + selection.to())
+                + "&tile=" + tile + "&columns=" + columns, source);
+        return Uni.createFrom().item(() -> contactSheets.manifest(selection, tile, columns, spriteUrl))
+                .runSubscriptionOn(io.smallrye.mutiny.infrastructure.Infrastructure.getDefaultWorkerPool());
+    }
+
+    @GET
+    @Path("/contact-sheet/image")
+    @Produces("image/jpeg")
+    public Uni<Response> getContactSheetImage(@QueryParam("from") @DefaultValue("") String from,
+                                              @QueryParam("to") @DefaultValue("") String to,
+                                              @QueryParam("dates") @DefaultValue("") String dates,
+                                              @QueryParam("tile") @DefaultValue("160") int tile,
+                                              @QueryParam("columns") @DefaultValue("0") int columns,
+                                              @QueryParam("source") @DefaultValue(PictureOfTheDay.DEFAULT_SOURCE) String source,
+                                              @HeaderParam(ByteRanges.RANGE) String range,
+                                              @HeaderParam(ByteRanges.IF_RANGE) String ifRange) {
+        registry.counter("potd.requests", Tags.of("type", "contact-sheet-image")).increment();
+        return ranged(renderContactSheetImage(from, to, dates, tile, columns, source), range, ifRange);
+    }
+
+    @CacheResult(cacheName = "potd-contact-sheet")
+    public Uni<RenditionCache.Rendered> renderContactSheetImage(String from, String to, String dates, int tile, int columns, String source) {
+        ContactSheetService.Selection selection = parseSelection(source, from, to, dates);
+        checkContactSheet(tile, columns);
+        return contactSheets.renderSprite(selection, tile, columns)
+                .map(data -> data == null ? null : new RenditionCache.Rendered(data, "image/jpeg"));
+    }
+
+    private ContactSheetService.Selection parseSelection(String source, String from, String to, String dates) {
+        try {
+            if (!dates.isBlank()) {
+                List<LocalDate> list = Arrays.stream(dates.split(","))
+                        .map(String::trim)
+                        .filter(d -> !d.isEmpty())
+                        .map(LocalDate::parse)
+                        .distinct()
+                        .toList();
+                if (list.size() > contactSheets.maxTiles()) {
+                    throw new BadRequestException("At most " + contactSheets.maxTiles() + " dates per contact sheet");
+                }
+                return new ContactSheetService.Selection(source, list, null, null);
+            }
+            if (from.isBlank()) {
+                throw new BadRequestException("Either dates or from is required");
+            }
+            LocalDate end = to.isBlank() ? LocalDate.now() : LocalDate.parse(to);
+            return new ContactSheetService.Selection(source, null, LocalDate.parse(from), end);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid date format. Use YYYY-MM-DD");
+        }
+    }
+
+    private void checkContactSheet(int tile, int columns) {
+        if (tile < 16 || tile > contactSheets.maxTileSize()) {
+            throw new BadRequestException("tile must be between 16 and " + contactSheets.maxTileSize());
+        }
+        if (columns < 0) {
+            throw new BadRequestException("columns must not be negative");
+        }
+    }
+
     @POST
     @Path("/scrape")
     public Uni<Response> triggerScrape() {
@@ -0,0 +1,32 @@
+package dev.sf13.resource;
+
+import dev.sf13.service.RenderRejectedException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Maps admission rejections to 503 + Retry-After (saturated) or 400 (request over budget).
+ * Rejections travel as failures rather than {@link Response} items so they are never stored
+ * by the {@code @CacheResult} image caches.
+ */
+@Provider
+public class RenderRejectedExceptionMapper implements ExceptionMapper<RenderRejectedException> {
+
+    @Override
+    public Response toResponse(RenderRejectedException e) {
+        if (e.isRetryable()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, e.getRetryAfterSeconds())
+                    .type(MediaType.TEXT_PLAIN)
+                    .entity(e.getMessage())
+                    .build();
+        }
+        return Response.status(Response.Status.BAD_REQUEST)
+                .type(MediaType.TEXT_PLAIN)
+                .entity(e.getMessage())
+                .build();
+    }
+}
@@ -0,0 +1,80 @@
+package dev.sf13.resource;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Limits request bodies to {@code http.max-body-size}, except for archive uploads
+ * ({@link ArchiveResource}). The server-wide {@code quarkus.http.limits.max-body-size} has to
+ * admit the largest archive, so the limit of every other endpoint is enforced here: a larger
+ * {@code Content-Length} is refused before the body is read, and a body of unknown length is
+ * cut off once it grows past the limit.
+ */
+@Provider
+public class RequestBodyLimitFilter implements ContainerRequestFilter {
+
+    @ConfigProperty(name = "http.max-body-size", defaultValue = "10240K")
+    MemorySize maxBodySize;
+
+    @Context
+    ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        if (ArchiveResource.class.equals(resourceInfo.getResourceClass())) {
+            return;
+        }
+        long limit = maxBodySize.asLongValue();
+        if (request.getLength() > limit) {
+            request.abortWith(Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE).build());
+        } else if (request.getLength() < 0 && request.hasEntity()) {
+            request.setEntityStream(new LimitedInputStream(request.getEntityStream(), limit));
+        }
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new WebApplicationException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package dev.sf13.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.sf13.dto.ArchiveImportResult;
+import dev.sf13.dto.ArchiveRecord;
+import dev.sf13.entity.PictureOfTheDay;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.TypedQuery;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.jpa.HibernateHints;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Moves the archive between environments as a zip, with constant heap however many pictures
+ * there are. The layout, in this order:
+ * <pre>
+ * metadata.ndjson                         one {@link ArchiveRecord} per line
+ * images/{source}/{date}/original.{ext}   image columns, stored uncompressed
+ * images/{source}/{date}/working.{ext}
+ * images/{source}/{date}/dithered.{ext}
+ * </pre>
+ * Export reads the rows with forward-only streaming queries: first the metadata without any
+ * blobs, then the images a few rows at a time. Import inserts the metadata in batches, skipping
+ * pictures that already exist, and then writes each image entry into the row it belongs to if
+ * that row does not have it yet. Only rows inserted by the import itself, or stored with the
+ * same content hash (say by an interrupted earlier run), take images, so other pictures are
+ * never touched and an interrupted import can simply be run again. Changed pictures are
+ * published to {@link CacheCoherence} once the images are in.
+ */
+@ApplicationScoped
+public class ArchiveService {
+
+    public static final String METADATA_ENTRY = "metadata.ndjson";
+    private static final String IMAGES_PREFIX = "images/";
+    // Image entry names; the column is the name + "Image"
+    private static final List<String> IMAGE_KINDS = List.of("original", "working", "dithered");
+
+    /**
+     * Optional restriction of an export to one source and/or an inclusive date range.
+     */
+    public record Filter(String source, LocalDate from, LocalDate to) {
+
+        String where() {
+            List<String> conditions = new ArrayList<>();
+            if (source != null) {
+                conditions.add("source = :source");
+            }
+            if (from != null) {
+                conditions.add("date >= :from");
+            }
+            if (to != null) {
+                conditions.add("date <= :to");
+            }
+            return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+        }
+
+        <T> TypedQuery<T> bind(TypedQuery<T> query) {
+            if (source != null) {
+                query.setParameter("source", source);
+            }
+            if (from != null) {
+                query.setParameter("from", from);
+            }
+            if (to != null) {
+                query.setParameter("to", to);
+            }
+            return query;
+        }
+    }
+
+    // Source and date of a picture
+    private record Key(String source, LocalDate date) {
+    }
+
+    @ConfigProperty(name = "archive.export.fetch-size", defaultValue = "500")
+    int metadataFetchSize;
+
+    // Rows with blobs held by the JDBC driver at a time
+    @ConfigProperty(name = "archive.export.image-fetch-size", defaultValue = "4")
+    int imageFetchSize;
+
+    @ConfigProperty(name = "archive.import.batch-size", defaultValue = "100")
+    int batchSize;
+
+    @ConfigProperty(name = "archive.transaction-timeout", defaultValue = "PT1H")
+    Duration transactionTimeout;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    CacheCoherence cacheCoherence;
+
+    /**
+     * Writes the archive to {@code out}. The stream is finished but not closed.
+     */
+    public void export(Filter filter, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        long start = System.nanoTime();
+        long pictures;
+        try {
+            // One read-only transaction, so both passes see the same rows
+            pictures = QuarkusTransaction.requiringNew().timeout((int) transactionTimeout.toSeconds()).call(() -> {
+                try {
+                    long count = writeMetadata(filter, zip);
+                    writeImages(filter, zip);
+                    return count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        zip.finish();
+        zip.flush();
+        registry.counter("archive.export.pictures").increment(pictures);
+        Log.infof("Exported %d pictures in %d ms", pictures, Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    private long writeMetadata(Filter filter, ZipOutputStream zip) throws IOException {
+        zip.putNextEntry(new ZipEntry(METADATA_ENTRY));
+        long count = 0;
+        try (Stream<ArchiveRecord> records = filter.bind(PictureOfTheDay.getEntityManager().createQuery(
+                        "select new dev.sf13.dto.ArchiveRecord(source, date, description, shortDescription, credit,"
+                                + " imageUrl, sourceUrl, contentHash, perceptualHash, createdAt) from PictureOfTheDay"
+                                + filter.where() + " order by source, date", ArchiveRecord.class))
+                .setHint(HibernateHints.HINT_FETCH_SIZE, metadataFetchSize)
+                .getResultStream()) {
+            Iterator<ArchiveRecord> iterator = records.iterator();
+            while (iterator.hasNext()) {
+                zip.write(objectMapper.writeValueAsBytes(iterator.next()));
+                zip.write('\n');
+                count++;
+            }
+        }
+        zip.closeEntry();
+        return count;
+    }
+
+    private void writeImages(Filter filter, ZipOutputStream zip) throws IOException {
+        try (Stream<Object[]> rows = filter.bind(PictureOfTheDay.getEntityManager().createQuery(
+                        "select source, date, originalImage, workingImage, ditheredImage from PictureOfTheDay"
+                                + filter.where() + " order by source, date", Object[].class))
+                .setHint(HibernateHints.HINT_FETCH_SIZE, imageFetchSize)
+                .getResultStream()) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                String directory = IMAGES_PREFIX + row[0] + "/" + row[1] + "/";
+                for (int i = 0; i < IMAGE_KINDS.size(); i++) {
+                    byte[] data = (byte[]) row[2 + i];
+                    if (data != null) {
+                        writeStored(zip, directory + IMAGE_KINDS.get(i) + "." + extension(data), data);
+                    }
+                }
+            }
+        }
+    }
+
+    // Images are compressed already; STORED entries just need their size and CRC up front
+    private static void writeStored(ZipOutputStream zip, String name, byte[] data) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    /**
+     * File extension for an image, from its magic bytes. Import ignores it.
+     */
+    static String extension(byte[] data) {
+        if (startsWith(data, 0x89, 'P', 'N', 'G')) {
+            return "png";
+        }
+        if (startsWith(data, 0xFF, 0xD8, 0xFF)) {
+            return "jpg";
+        }
+        if (startsWith(data, 'G', 'I', 'F')) {
+            return "gif";
+        }
+        if (startsWith(data, 'I', 'I', 0x2A, 0) || startsWith(data, 'M', 'M', 0, 0x2A)) {
+            return "tif";
+        }
+        return "bin";
+    }
+
+    private static boolean startsWith(byte[] data, int... prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((data[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads an archive written by {@link #export}. Pictures already present for the same
+     * source and date are skipped; a differing content hash is counted as a conflict, and the
+     * images of that picture are left alone.
+     *
+     * @throws IOException if reading fails or the zip or a metadata line is malformed
+     * @throws IllegalArgumentException if the metadata is missing, not first or lacks a date
+     */
+    public ArchiveImportResult importArchive(InputStream in) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        ArchiveImportResult result = new ArchiveImportResult();
+        long start = System.nanoTime();
+        boolean metadata = false;
+        // Pictures whose missing images this import may fill in, and those it changed
+        Set<Key> fillable = new HashSet<>();
+        Set<Key> changed = new LinkedHashSet<>();
+        try {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (name.equals(METADATA_ENTRY)) {
+                    importMetadata(zip, result, fillable, changed);
+                    metadata = true;
+                } else if (name.startsWith(IMAGES_PREFIX) && !entry.isDirectory()) {
+                    if (!metadata) {
+                        throw new IllegalArgumentException(METADATA_ENTRY + " must be the first entry of the archive");
+                    }
+                    importImage(name, zip, result, fillable, changed);
+                } else if (!entry.isDirectory()) {
+                    Log.warnf("Ignoring unexpected archive entry %s", name);
+                }
+            }
+            if (!metadata) {
+                throw new IllegalArgumentException("Archive has no " + METADATA_ENTRY + " entry");
+            }
+        } finally {
+            // Also after a failure: what was committed until then is visible in the database
+            publish(changed);
+        }
+        registry.counter("archive.import.pictures", Tags.of("result", "imported")).increment(result.imported);
+        registry.counter("archive.import.pictures", Tags.of("result", "skipped")).increment(result.skipped);
+        registry.counter("archive.import.pictures", Tags.of("result", "conflict")).increment(result.conflicts);
+        Log.infof("Imported %d pictures (%d skipped, %d conflicts) and %d images in %d ms", result.imported,
+                result.skipped, result.conflicts, result.images, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return result;
+    }
+
+    private void importMetadata(InputStream entry, ArchiveImportResult result, Set<Key> fillable, Set<Key> changed) throws IOException {
+        // Not closed: that would close the zip stream
+        BufferedReader reader = new BufferedReader(new InputStreamReader(entry, StandardCharsets.UTF_8));
+        List<ArchiveRecord> batch = new ArrayList<>(batchSize);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            ArchiveRecord record = objectMapper.readValue(line, ArchiveRecord.class);
+            if (record.date == null) {
+                throw new IllegalArgumentException("Archive record without date: " + line);
+            }
+            if (record.source == null) {
+                record.source = PictureOfTheDay.DEFAULT_SOURCE;
+            }
+            batch.add(record);
+            if (batch.size() == batchSize) {
+                insertBatch(batch, result, fillable, changed);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            insertBatch(batch, result, fillable, changed);
+        }
+    }
+
+    private void insertBatch(List<ArchiveRecord> batch, ArchiveImportResult result, Set<Key> fillable, Set<Key> changed) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            // One lookup per batch; exports are ordered by (source, date), so this is a narrow range
+            Set<String> sources = batch.stream().map(record -> record.source).collect(Collectors.toSet());
+            LocalDate from = batch.stream().map(record -> record.date).min(LocalDate::compareTo).orElseThrow();
+            LocalDate to = batch.stream().map(record -> record.date).max(LocalDate::compareTo).orElseThrow();
+            Map<Key, String> existing = new HashMap<>();
+            for (Object[] row : PictureOfTheDay.getEntityManager().createQuery(
+                            "select source, date, contentHash from PictureOfTheDay where source in ?1 and date between ?2 and ?3", Object[].class)
+                    .setParameter(1, sources)
+                    .setParameter(2, from)
+                    .setParameter(3, to)
+                    .getResultList()) {
+                existing.put(new Key((String) row[0], (LocalDate) row[1]), (String) row[2]);
+            }
+
+            for (ArchiveRecord record : batch) {
+                Key key = new Key(record.source, record.date);
+                if (existing.containsKey(key)) {
+                    if (Objects.equals(existing.get(key), record.contentHash)) {
+                        result.skipped++;
+                        if (record.contentHash != null) {
+                            fillable.add(key);
+                        }
+                    } else {
+                        Log.warnf("Not importing %s: a different picture is already stored", key);
+                        result.conflicts++;
+                    }
+                    continue;
+                }
+                PictureOfTheDay potd = new PictureOfTheDay();
+                potd.source = record.source;
+                potd.date = record.date;
+                potd.description = record.description;
+                potd.shortDescription = record.shortDescription;
+                potd.credit = record.credit;
+                potd.imageUrl = record.imageUrl;
+                potd.sourceUrl = record.sourceUrl;
+                potd.contentHash = record.contentHash;
+                potd.createdAt = record.createdAt;
+                if (record.perceptualHash != null) {
+                    potd.updatePerceptualHash(record.perceptualHash);
+                }
+                potd.persist();
+                // Duplicate lines within the archive
+                existing.put(key, record.contentHash);
+                fillable.add(key);
+                changed.add(key);
+                result.imported++;
+            }
+        });
+    }
+
+    private void importImage(String name, InputStream entry, ArchiveImportResult result, Set<Key> fillable, Set<Key> changed) throws IOException {
+        // images/{source}/{date}/{kind}.{ext}
+        String[] parts = name.substring(IMAGES_PREFIX.length()).split("/");
+        String kind = parts.length == 3 ? parts[2].replaceFirst("\\..*$", "") : null;
+        if (kind == null || !IMAGE_KINDS.contains(kind)) {
+            Log.warnf("Ignoring unexpected archive entry %s", name);
+            return;
+        }
+        String source = parts[0];
+        LocalDate date;
+        try {
+            date = LocalDate.parse(parts[1]);
+        } catch (DateTimeParseException e) {
+            Log.warnf("Ignoring archive entry %s with an invalid date", name);
+            return;
+        }
+        Key key = new Key(source, date);
+        if (!fillable.contains(key)) {
+            // A conflicting picture, or one the metadata did not list; the entry is skipped unread
+            Log.debugf("Not importing %s: its picture was not imported", name);
+            return;
+        }
+        byte[] data = entry.readAllBytes();
+        String column = kind + "Image";
+        // Only fills in missing images
+        int updated = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.update(
+                column + " = ?1 where source = ?2 and date = ?3 and " + column + " is null", data, source, date));
+        if (updated > 0) {
+            changed.add(key);
+        }
+        result.images += updated;
+    }
+
+    private void publish(Set<Key> changed) {
+        List<Key> keys = new ArrayList<>(changed);
+        try {
+            for (int i = 0; i < keys.size(); i += batchSize) {
+                List<Key> batch = keys.subList(i, Math.min(i + batchSize, keys.size()));
+                QuarkusTransaction.requiringNew().run(() -> batch.forEach(key -> cacheCoherence.publish(key.source(), key.date())));
+            }
+        } catch (RuntimeException e) {
+            // The import itself is committed; replicas may serve stale entries for these dates
+            Log.errorf(e, "Could not publish %d imported pictures to the other replicas", keys.size());
+        }
+    }
+}
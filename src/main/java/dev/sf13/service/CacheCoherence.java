@@ -0,0 +1,167 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.CacheInvalidation;
+import dev.sf13.entity.CacheVersion;
+import dev.sf13.entity.PictureOfTheDay;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheManager;
+import io.quarkus.cache.CaffeineCache;
+import io.quarkus.cache.CompositeCacheKey;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.control.ActivateRequestContext;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the local caches of all replicas coherent after a picture changes.
+ * <p>
+ * The writer records the changed date in {@code cache_invalidation} within its own transaction,
+ * stamped with the next value of the single-row {@link CacheVersion} counter. Every replica polls
+ * that counter (a primary key lookup), and when it moved evicts just the cache entries keyed by
+ * the dates published since and renders them again, so caches stay hot and all nodes converge
+ * within one poll interval.
+ */
+@ApplicationScoped
+public class CacheCoherence {
+
+    // Caches keyed by arbitrary date ranges; they are cleared as a whole
+    private static final Set<String> RANGE_CACHES = Set.of("potd-contact-sheet");
+
+    @ConfigProperty(name = "cache.coherence.retention", defaultValue = "P7D")
+    Duration retention;
+
+    @Inject
+    CacheManager cacheManager;
+
+    @Inject
+    TileCache tileCache;
+
+    @Inject
+    RenditionCache renditions;
+
+    @Inject
+    DeviceProfileRegistry deviceProfiles;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final AtomicLong seenVersion = new AtomicLong();
+
+    void onStart(@Observes StartupEvent event) {
+        try {
+            QuarkusTransaction.requiringNew().run(CacheVersion::create);
+        } catch (RuntimeException e) {
+            // Another replica created it at the same time
+            Log.debugf(e, "Cache version counter already created");
+        }
+        // Local caches start empty, so older changes need not be replayed
+        seenVersion.set(QuarkusTransaction.requiringNew().call(CacheVersion::latest));
+        registry.gauge("cache.coherence.version", seenVersion);
+    }
+
+    public void publish(LocalDate date) {
+        publish(PictureOfTheDay.DEFAULT_SOURCE, date);
+    }
+
+    /**
+     * Announces that the picture of {@code source} on {@code date} changed. Joins the caller's
+     * transaction, so other replicas only see it once the change itself is committed.
+     */
+    public void publish(String source, LocalDate date) {
+        QuarkusTransaction.joiningExisting().run(() -> {
+            CacheInvalidation invalidation = new CacheInvalidation();
+            invalidation.source = source;
+            invalidation.date = date;
+            invalidation.createdAt = LocalDateTime.now();
+            // Holds the counter row until commit, so versions are committed in order
+            invalidation.version = CacheVersion.next();
+            invalidation.persist();
+            CacheInvalidation.delete("createdAt < ?1", LocalDateTime.now().minus(retention));
+        });
+    }
+
+    @Scheduled(every = "{cache.coherence.poll-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @ActivateRequestContext
+    void poll() {
+        long seen = seenVersion.get();
+        long latest = QuarkusTransaction.requiringNew().call(CacheVersion::latest);
+        if (latest <= seen) {
+            return;
+        }
+        Map<LocalDate, Set<String>> changes = QuarkusTransaction.requiringNew().call(() -> CacheInvalidation.<CacheInvalidation>find("version > ?1 and version <= ?2", seen, latest)
+                .stream()
+                .collect(Collectors.groupingBy(invalidation -> invalidation.date, TreeMap::new,
+                        Collectors.mapping(invalidation -> invalidation.source, Collectors.toCollection(TreeSet::new)))));
+        Log.infof("Cache version %d -> %d, refreshing %s", seen, latest, changes);
+        // Cache keys hold the date, so eviction covers every source of a date; only changed sources are re-rendered
+        changes.forEach((date, sources) -> {
+            int evicted = evict(date.toString());
+            registry.counter("cache.coherence.evictions").increment(evicted);
+            sources.forEach(source -> prewarm(source, date.toString()));
+        });
+        seenVersion.set(latest);
+    }
+
+    /**
+     * Evicts every cache entry whose key is, or contains, the given date.
+     */
+    int evict(String date) {
+        int evicted = 0;
+        for (String name : cacheManager.getCacheNames()) {
+            Optional<Cache> cache = cacheManager.getCache(name);
+            if (cache.isEmpty()) {
+                continue;
+            }
+            if (RANGE_CACHES.contains(name)) {
+                cache.get().invalidateAll().await().indefinitely();
+                continue;
+            }
+            for (Object key : cache.get().as(CaffeineCache.class).keySet()) {
+                if (matches(key, date)) {
+                    cache.get().invalidate(key).await().indefinitely();
+                    evicted++;
+                }
+            }
+        }
+        tileCache.invalidate(date);
+        return evicted;
+    }
+
+    private static boolean matches(Object key, String date) {
+        if (key instanceof CompositeCacheKey composite) {
+            return Arrays.asList(composite.getKeyElements()).contains(date);
+        }
+        return date.equals(key);
+    }
+
+    private void prewarm(String source, String date) {
+        try {
+            renditions.describe(date, source).await().atMost(Duration.ofMinutes(1));
+            renditions.trmnl(date, 1, RenditionFormat.PNG, source).await().atMost(Duration.ofMinutes(1));
+            for (DeviceProfile profile : deviceProfiles.all()) {
+                renditions.device(date, profile.name(), source).await().atMost(Duration.ofMinutes(1));
+            }
+        } catch (RuntimeException e) {
+            // The entries are simply rendered on the next request instead
+            Log.warnf(e, "Could not pre-warm caches for %s %s", source, date);
+        }
+    }
+}
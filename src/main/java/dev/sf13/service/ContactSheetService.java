@@ -0,0 +1,182 @@
+package dev.sf13.service;
+
+import dev.sf13.dto.ContactSheetDTO;
+import dev.sf13.dto.PictureOfTheDaySummary;
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.hibernate.orm.panache.PanacheQuery;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders many pictures as one sprite ("contact sheet") plus a JSON manifest of tile positions,
+ * so galleries need one request instead of one per picture.
+ * <p>
+ * Manifest and sprite are two requests on purpose: the sprite is binary, referenced by URL
+ * from {@code <img>} or CSS and cached on its own, while the manifest is small JSON. Neither
+ * reads what the other needs, and each is a single query: the manifest a blob-free projection,
+ * the sprite the blob lengths of the render sources. Each tile is then decoded (subsampled to
+ * roughly the tile size) straight from its picture's blob stream in parallel on the worker
+ * pool, so no encoded image is loaded whole. The sheet is admitted as one render, counting the
+ * encoded bytes as well as the decoded pixels.
+ */
+@ApplicationScoped
+public class ContactSheetService {
+
+    /**
+     * Pictures of one source: either an explicit list of dates or an inclusive date range.
+     */
+    public record Selection(String source, List<LocalDate> dates, LocalDate from, LocalDate to) {
+
+        String where() {
+            return dates != null
+                    ? "source = ?1 and date in ?2 and originalImage is not null order by date desc"
+                    : "source = ?1 and date between ?2 and ?3 and originalImage is not null order by date desc";
+        }
+
+        Object[] params() {
+            return dates != null ? new Object[]{source, dates} : new Object[]{source, from, to};
+        }
+    }
+
+    @ConfigProperty(name = "contact-sheet.max-tiles", defaultValue = "60")
+    int maxTiles;
+
+    @ConfigProperty(name = "contact-sheet.max-tile-size", defaultValue = "512")
+    int maxTileSize;
+
+    @ConfigProperty(name = "contact-sheet.jpeg-quality", defaultValue = "0.85")
+    float jpegQuality;
+
+    @Inject
+    ImageService imageService;
+
+    @Inject
+    OriginalImageStore store;
+
+    @Inject
+    RenderAdmissionController admission;
+
+    @Inject
+    ImagePipelineMetrics pipelineMetrics;
+
+    private ImagePipelineMetrics.Pipeline pipeline;
+
+    @PostConstruct
+    void init() {
+        pipeline = pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_CONTACT_SHEET, "tile");
+    }
+
+    public int maxTileSize() {
+        return maxTileSize;
+    }
+
+    public int maxTiles() {
+        return maxTiles;
+    }
+
+    /**
+     * Builds the manifest from a blob-free projection. Tile order matches {@link #renderSprite}.
+     */
+    public ContactSheetDTO manifest(Selection selection, int tileSize, int columns, String spriteUrl) {
+        List<PictureOfTheDaySummary> pictures = QuarkusTransaction.requiringNew().call(() ->
+                limit(PictureOfTheDay.find(selection.where(), selection.params()).project(PictureOfTheDaySummary.class)).list());
+        int cols = columns(pictures.size(), columns);
+        List<ContactSheetDTO.Tile> tiles = new ArrayList<>(pictures.size());
+        for (int i = 0; i < pictures.size(); i++) {
+            PictureOfTheDaySummary picture = pictures.get(i);
+            String date = picture.date.toString();
+            tiles.add(new ContactSheetDTO.Tile(date, picture.shortDescription, picture.credit,
+                    (i % cols) * tileSize, (i / cols) * tileSize, PictureOfTheDay.withSource("/api/potd/" + date + "/image", selection.source())));
+        }
+        return new ContactSheetDTO(tileSize, cols, rows(pictures.size(), cols), spriteUrl, tiles);
+    }
+
+    /**
+     * Renders the sprite as a JPEG, or emits {@code null} if the selection has no pictures.
+     *
+     * @throws RenderRejectedException (as failure) if the sheet does not fit the render budget
+     */
+    public Uni<byte[]> renderSprite(Selection selection, int tileSize, int columns) {
+        return Uni.createFrom().item(() -> store.renderSources(selection.source(), selection.dates(), selection.from(), selection.to(), maxTiles))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .flatMap(sources -> {
+                    if (sources.isEmpty()) {
+                        return Uni.createFrom().nullItem();
+                    }
+                    int cols = columns(sources.size(), columns);
+                    int rows = rows(sources.size(), cols);
+                    // Subsampled decodes stay below twice the tile size on the short edge
+                    long decodedPixels = sources.size() * 8L * tileSize * tileSize;
+                    long encodedBytes = sources.stream().mapToLong(OriginalImageStore.RenderSource::length).sum();
+                    RenderAdmissionController.Permit permit = admission.admit(decodedPixels, (long) cols * tileSize, (long) rows * tileSize, encodedBytes);
+
+                    List<Uni<BufferedImage>> tiles = new ArrayList<>(sources.size());
+                    for (OriginalImageStore.RenderSource source : sources) {
+                        tiles.add(Uni.createFrom().item(() -> tile(source, tileSize))
+                                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool()));
+                    }
+                    return Uni.join().all(tiles).andFailFast()
+                            .map(images -> compose(images, tileSize, cols, rows))
+                            .onTermination().invoke(permit::close);
+                });
+    }
+
+    private BufferedImage tile(OriginalImageStore.RenderSource source, int tileSize) {
+        try {
+            return store.read(source, in -> imageService.thumbnail(in, source.length(), tileSize, tileSize, pipeline));
+        } catch (IOException e) {
+            // One unreadable picture should not fail the whole sheet; its tile stays blank
+            Log.warnf(e, "Could not render contact sheet tile for %s", source.date());
+            return null;
+        }
+    }
+
+    private byte[] compose(List<BufferedImage> images, int tileSize, int columns, int rows) {
+        BufferedImage sheet = new BufferedImage(columns * tileSize, rows * tileSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = sheet.createGraphics();
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, sheet.getWidth(), sheet.getHeight());
+        for (int i = 0; i < images.size(); i++) {
+            BufferedImage image = images.get(i);
+            if (image != null) {
+                g2d.drawImage(image, (i % columns) * tileSize, (i / columns) * tileSize, null);
+            }
+        }
+        g2d.dispose();
+        try {
+            return imageService.encodeJpeg(sheet, jpegQuality, pipeline);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode contact sheet", e);
+        }
+    }
+
+    private <T> PanacheQuery<T> limit(PanacheQuery<T> query) {
+        return query.page(0, maxTiles);
+    }
+
+    private static int columns(int count, int requested) {
+        if (count == 0) {
+            return Math.max(1, requested);
+        }
+        int columns = requested > 0 ? requested : (int) Math.ceil(Math.sqrt(count));
+        return Math.min(columns, count);
+    }
+
+    private static int rows(int count, int columns) {
+        return (count + columns - 1) / columns;
+    }
+}
@@ -0,0 +1,52 @@
+package dev.sf13.service;
+
+/**
+ * Everything needed to render the exact payload one kind of panel consumes.
+ *
+ * @param width    framebuffer width in pixels, as the panel expects it
+ * @param height   framebuffer height in pixels
+ * @param rotation clockwise rotation (0, 90, 180 or 270) applied after fitting, for panels mounted
+ *                 in a different orientation than their framebuffer
+ */
+public record DeviceProfile(String name, int width, int height, FitMode fit, int rotation,
+                            int bitDepth, DitherAlgorithm dither, RenditionFormat format) {
+
+    // Bump when the rendering code changes its output, so stored renditions are re-rendered
+    private static final String RENDERER_VERSION = "1";
+
+    /** Built-in TRMNL profile, used when none is configured under that name. */
+    public static final DeviceProfile TRMNL = new DeviceProfile("trmnl", 800, 480, FitMode.COVER, 0,
+            1, DitherAlgorithm.FLOYD_STEINBERG, RenditionFormat.PNG);
+
+    public DeviceProfile {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Device profile " + name + ": width and height must be positive");
+        }
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Device profile " + name + ": rotation must be 0, 90, 180 or 270");
+        }
+        if (!GrayscaleDitherer.isSupportedBitDepth(bitDepth)) {
+            throw new IllegalArgumentException("Device profile " + name + ": bit depth must be 1, 2 or 4");
+        }
+    }
+
+    /**
+     * Identifies the rendered bytes. Stored renditions whose fingerprint differs from the
+     * current profile definition are stale.
+     */
+    public String fingerprint() {
+        return "v" + RENDERER_VERSION + ":" + width + "x" + height + ":" + fit + ":" + rotation + ":"
+                + bitDepth + ":" + dither + ":" + format;
+    }
+
+    /**
+     * The same profile with a different bit depth and output format (this instance if unchanged).
+     */
+    public DeviceProfile withOutput(int bitDepth, RenditionFormat format) {
+        if (bitDepth == this.bitDepth && format == this.format) {
+            return this;
+        }
+        return new DeviceProfile(name + "-" + bitDepth + "bit-" + format.name().toLowerCase(java.util.Locale.ROOT),
+                width, height, fit, rotation, bitDepth, dither, format);
+    }
+}
@@ -0,0 +1,52 @@
+package dev.sf13.service;
+
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * The device profiles configured under {@code device.profiles.*}, validated at startup.
+ */
+@ApplicationScoped
+public class DeviceProfileRegistry {
+
+    @Inject
+    DeviceProfilesConfig config;
+
+    private Map<String, DeviceProfile> profiles;
+
+    @PostConstruct
+    void init() {
+        Map<String, DeviceProfile> loaded = new TreeMap<>();
+        config.profiles().forEach((name, p) -> loaded.put(name,
+                new DeviceProfile(name, p.width(), p.height(), p.fit(), p.rotate(), p.bitDepth(), p.dither(), p.format())));
+        profiles = Collections.unmodifiableMap(loaded);
+        Log.infof("Registered device profiles: %s", profiles.keySet());
+    }
+
+    public Optional<DeviceProfile> find(String name) {
+        return Optional.ofNullable(profiles.get(name));
+    }
+
+    public Collection<DeviceProfile> all() {
+        return profiles.values();
+    }
+
+    /**
+     * Whether this exact profile definition is registered (ad-hoc variants are not).
+     */
+    public boolean isRegistered(DeviceProfile profile) {
+        return profile.equals(profiles.get(profile.name()));
+    }
+
+    public DeviceProfile trmnl() {
+        return find(DeviceProfile.TRMNL.name()).orElse(DeviceProfile.TRMNL);
+    }
+}
@@ -0,0 +1,41 @@
+package dev.sf13.service;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.util.Map;
+
+/**
+ * Device profiles from configuration, e.g.
+ * <pre>
+ * device.profiles.trmnl.width=800
+ * device.profiles.trmnl.height=480
+ * device.profiles.trmnl.bit-depth=1
+ * </pre>
+ */
+@ConfigMapping(prefix = "device")
+public interface DeviceProfilesConfig {
+
+    Map<String, Profile> profiles();
+
+    interface Profile {
+        int width();
+
+        int height();
+
+        @WithDefault("cover")
+        FitMode fit();
+
+        @WithDefault("0")
+        int rotate();
+
+        @WithDefault("1")
+        int bitDepth();
+
+        @WithDefault("floyd-steinberg")
+        DitherAlgorithm dither();
+
+        @WithDefault("png")
+        RenditionFormat format();
+    }
+}
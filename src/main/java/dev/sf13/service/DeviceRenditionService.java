@@ -0,0 +1,130 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.DeviceRendition;
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders pictures for device profiles and keeps the results of registered profiles in the
+ * {@code device_rendition} table, so devices are served stored bytes without per-request work.
+ */
+@ApplicationScoped
+public class DeviceRenditionService {
+
+    public record Rendition(byte[] data, String contentType) {
+    }
+
+    @Inject
+    DeviceProfileRegistry profiles;
+
+    @Inject
+    ImageService imageService;
+
+    @Inject
+    RenderAdmissionController admission;
+
+    @Inject
+    ImagePipelineMetrics pipelineMetrics;
+
+    private final Map<String, ImagePipelineMetrics.Pipeline> pipelines = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        for (DeviceProfile profile : profiles.all()) {
+            pipelines.put(profile.name(), pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_DEVICE, profile.name()));
+        }
+        pipelines.putIfAbsent(DeviceProfile.TRMNL.name(), pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_DEVICE, DeviceProfile.TRMNL.name()));
+    }
+
+    /**
+     * Renders and stores the picture for every registered profile. Called at ingest, once the
+     * picture is committed; a failing profile is logged and left to be rendered on first request.
+     */
+    public void prerenderAll(PictureOfTheDay potd) {
+        prerenderAll(potd, null);
+    }
+
+    /**
+     * Like {@link #prerenderAll(PictureOfTheDay)}, but copies current renditions of
+     * {@code sameImage} (a picture with the same image, may be null) instead of rendering them.
+     */
+    public void prerenderAll(PictureOfTheDay potd, PictureOfTheDay sameImage) {
+        for (DeviceProfile profile : profiles.all()) {
+            try {
+                if (sameImage != null) {
+                    DeviceRendition stored = QuarkusTransaction.requiringNew().call(() -> DeviceRendition.findByPictureAndProfile(sameImage, profile.name()));
+                    if (stored != null && profile.fingerprint().equals(stored.fingerprint)) {
+                        store(potd, profile, stored.data);
+                        continue;
+                    }
+                }
+                byte[] data = imageService.renderForDevice(potd.renderSource(), profile, pipeline(profile));
+                if (data != null) {
+                    store(potd, profile, data);
+                }
+            } catch (Exception e) {
+                Log.errorf(e, "Failed to pre-render %s for device profile %s", potd.date, profile.name());
+            }
+        }
+    }
+
+    /**
+     * Returns the stored rendition if it is current, otherwise renders it (under admission
+     * control) and stores it when the profile is a registered one.
+     */
+    public Rendition getOrRender(PictureOfTheDay potd, DeviceProfile profile) throws IOException {
+        boolean registered = profiles.isRegistered(profile);
+        if (registered) {
+            DeviceRendition stored = QuarkusTransaction.requiringNew().call(() -> DeviceRendition.findByPictureAndProfile(potd, profile.name()));
+            if (stored != null && profile.fingerprint().equals(stored.fingerprint)) {
+                return new Rendition(stored.data, stored.contentType);
+            }
+        }
+
+        byte[] data;
+        try (RenderAdmissionController.Permit permit = admission.admit(imageService.readDimensions(potd.renderSource()), profile.width(), profile.height())) {
+            data = imageService.renderForDevice(potd.renderSource(), profile, pipeline(profile));
+        }
+        if (registered) {
+            try {
+                store(potd, profile, data);
+            } catch (RuntimeException e) {
+                // Typically a concurrent request stored it first; the rendered bytes are identical
+                Log.debugf(e, "Could not store %s rendition for %s", profile.name(), potd.date);
+            }
+        }
+        return new Rendition(data, profile.format().contentType());
+    }
+
+    /**
+     * Replaces the stored rendition in a transaction of its own, so a failure (typically a
+     * concurrent store of the same rendition) leaves the caller's transaction usable.
+     */
+    private void store(PictureOfTheDay potd, DeviceProfile profile, byte[] data) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            DeviceRendition.delete("picture = ?1 and profile = ?2", potd, profile.name());
+            DeviceRendition rendition = new DeviceRendition();
+            rendition.picture = potd;
+            rendition.profile = profile.name();
+            rendition.fingerprint = profile.fingerprint();
+            rendition.contentType = profile.format().contentType();
+            rendition.data = data;
+            rendition.createdAt = LocalDateTime.now();
+            rendition.persist();
+        });
+    }
+
+    private ImagePipelineMetrics.Pipeline pipeline(DeviceProfile profile) {
+        ImagePipelineMetrics.Pipeline pipeline = pipelines.get(profile.name());
+        return pipeline != null ? pipeline : pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_DEVICE, profile.name());
+    }
+}
@@ -0,0 +1,13 @@
+package dev.sf13.service;
+
+/**
+ * Quantization strategy used by {@link GrayscaleDitherer}.
+ */
+public enum DitherAlgorithm {
+    /** Error diffusion with a little seeded noise. Best quality, inherently sequential. */
+    FLOYD_STEINBERG,
+    /** 8x8 Bayer matrix. Stable patterns and no cross-pixel dependencies. */
+    ORDERED,
+    /** Plain nearest-level quantization, for line art and text. */
+    THRESHOLD
+}
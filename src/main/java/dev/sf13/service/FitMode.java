@@ -0,0 +1,13 @@
+package dev.sf13.service;
+
+/**
+ * How a picture is fitted into a fixed panel resolution.
+ */
+public enum FitMode {
+    /** Scale to fill the panel and crop the overflow, centered. */
+    COVER,
+    /** Scale to fit inside the panel and letterbox with white. */
+    CONTAIN,
+    /** Scale each axis independently, ignoring the aspect ratio. */
+    STRETCH
+}
@@ -0,0 +1,197 @@
+package dev.sf13.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.zip.CRC32C;
+
+/**
+ * Dithering to 2, 4 or 16 gray levels (1, 2 or 4 bits per pixel), see {@link DitherAlgorithm}.
+ * <p>
+ * The result is a packed {@link BufferedImage#TYPE_BYTE_BINARY} image with a gray palette,
+ * so PNG encodes it at the native bit depth and {@link #packedPixels(BufferedImage)} can hand
+ * the framebuffer bytes to panels as-is.
+ * <p>
+ * The luma conversion and the threshold/ordered quantization run on {@link PixelKernels}
+ * (Vector API when available, see {@code image.simd.enabled}); error diffusion carries a
+ * dependency from each pixel to the next and stays a scalar loop.
+ */
+@ApplicationScoped
+public class GrayscaleDitherer {
+
+    // 8x8 Bayer threshold matrix, normalized to [-0.5, 0.5)
+    private static final float[] BAYER_8X8 = new float[64];
+
+    static {
+        int[] bayer = {
+                0, 32, 8, 40, 2, 34, 10, 42,
+                48, 16, 56, 24, 50, 18, 58, 26,
+                12, 44, 4, 36, 14, 46, 6, 38,
+                60, 28, 52, 20, 62, 30, 54, 22,
+                3, 35, 11, 43, 1, 33, 9, 41,
+                51, 19, 59, 27, 49, 17, 57, 25,
+                15, 47, 7, 39, 13, 45, 5, 37,
+                63, 31, 55, 23, 61, 29, 53, 21};
+        for (int i = 0; i < 64; i++) {
+            BAYER_8X8[i] = (bayer[i] + 0.5f) / 64f - 0.5f;
+        }
+    }
+
+    @ConfigProperty(name = "image.simd.enabled", defaultValue = "true")
+    boolean simdEnabled;
+
+    PixelKernels kernels = PixelKernels.best();
+
+    @PostConstruct
+    void init() {
+        if (!simdEnabled) {
+            kernels = PixelKernels.scalar();
+        }
+    }
+
+    public static boolean isSupportedBitDepth(int bitDepth) {
+        return bitDepth == 1 || bitDepth == 2 || bitDepth == 4;
+    }
+
+    /**
+     * Seed for the dithering noise, derived from the encoded input so the same image always
+     * dithers to the same bytes, on every node and in every cache generation.
+     */
+    public static long noiseSeed(byte[] imageData) {
+        CRC32C crc = new CRC32C();
+        crc.update(imageData, 0, imageData.length);
+        return crc.getValue() * 0x9E3779B97F4A7C15L + imageData.length;
+    }
+
+    /**
+     * Uniform noise in [-5, 5) for pixel (x, y). A SplitMix64 finalizer over the seed and the
+     * pixel position: stateless, so there is no shared generator to contend on and the
+     * result does not depend on iteration order.
+     */
+    static float noise(long seed, int x, int y) {
+        long z = seed + ((((long) y) << 32) | (x & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return ((z >>> 40) * 0x1.0p-24f - 0.5f) * 10;
+    }
+
+    /**
+     * Linear gray palette with {@code 2^bitDepth} entries, index 0 being black.
+     */
+    static IndexColorModel grayPalette(int bitDepth) {
+        int levels = 1 << bitDepth;
+        byte[] gray = new byte[levels];
+        for (int i = 0; i < levels; i++) {
+            gray[i] = (byte) Math.round(i * 255f / (levels - 1));
+        }
+        return new IndexColorModel(bitDepth, levels, gray, gray, gray);
+    }
+
+    /**
+     * Backing bytes of a dithered image: row-major, most significant bits first, each row
+     * padded to a whole byte, one palette index (0 = black) per pixel.
+     */
+    public static byte[] packedPixels(BufferedImage dithered) {
+        return ((DataBufferByte) dithered.getRaster().getDataBuffer()).getData();
+    }
+
+    public BufferedImage dither(BufferedImage img, int bitDepth, long seed) {
+        return dither(img, bitDepth, DitherAlgorithm.FLOYD_STEINBERG, seed);
+    }
+
+    public BufferedImage dither(BufferedImage img, int bitDepth, DitherAlgorithm algorithm, long seed) {
+        if (!isSupportedBitDepth(bitDepth)) {
+            throw new IllegalArgumentException("Unsupported bit depth: " + bitDepth);
+        }
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int maxIndex = (1 << bitDepth) - 1;
+        float step = 255f / maxIndex;
+
+        // 1. Prepare the float array for error propagation (row-major)
+        float[] pixels = new float[w * h];
+
+        // 2. Convert to Grayscale AND add Noise (only error diffusion needs it)
+        boolean addNoise = algorithm == DitherAlgorithm.FLOYD_STEINBERG;
+        int[] rgb = new int[w];
+        for (int y = 0; y < h; y++) {
+            int row = y * w;
+            img.getRGB(0, y, w, 1, rgb, 0, w);
+            kernels.luma(rgb, pixels, row, w);
+
+            // Add a tiny bit of noise (+/- 5 on a 0-255 scale), seeded from the image content
+            // This prevents the "worm" artifacts in flat gray areas by breaking the mathematical pattern.
+            if (addNoise) {
+                for (int x = 0; x < w; x++) {
+                    // Clamp strictly between 0 and 255 just in case noise pushed it over
+                    pixels[row + x] = Math.max(0, Math.min(255, pixels[row + x] + noise(seed, x, y)));
+                }
+            }
+        }
+
+        // 3. Quantize, writing palette indices straight into the packed raster
+        BufferedImage dithered = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY, grayPalette(bitDepth));
+        byte[] packed = packedPixels(dithered);
+        int stride = (w * bitDepth + 7) / 8;
+
+        if (algorithm != DitherAlgorithm.FLOYD_STEINBERG) {
+            // One threshold row per Bayer row (all zeros for plain thresholding), tiled to the image width
+            int rows = algorithm == DitherAlgorithm.ORDERED ? 8 : 1;
+            float[][] thresholds = new float[rows][w];
+            if (algorithm == DitherAlgorithm.ORDERED) {
+                for (int r = 0; r < 8; r++) {
+                    for (int x = 0; x < w; x++) {
+                        thresholds[r][x] = BAYER_8X8[(r << 3) | (x & 7)] * step;
+                    }
+                }
+            }
+            int[] indices = new int[w];
+            for (int y = 0; y < h; y++) {
+                kernels.quantize(pixels, y * w, thresholds[y % rows], indices, w, step, maxIndex);
+                for (int x = 0; x < w; x++) {
+                    int bit = x * bitDepth;
+                    packed[y * stride + (bit >> 3)] |= (byte) (indices[x] << (8 - bitDepth - (bit & 7)));
+                }
+            }
+            return dithered;
+        }
+
+        diffuse(pixels, w, h, bitDepth, packed, stride);
+        return dithered;
+    }
+
+    /**
+     * Floyd-Steinberg error diffusion. Kept in its own method so the JIT compiles this hot,
+     * strictly sequential loop on its own.
+     */
+    private static void diffuse(float[] pixels, int w, int h, int bitDepth, byte[] packed, int stride) {
+        int maxIndex = (1 << bitDepth) - 1;
+        float step = 255f / maxIndex;
+        for (int y = 0; y < h; y++) {
+            int row = y * w;
+            for (int x = 0; x < w; x++) {
+                float oldPixel = pixels[row + x];
+                int index = Math.min(maxIndex, Math.max(0, (int) ((oldPixel + step / 2) / step)));
+                float quantError = oldPixel - index * step;
+
+                int bit = x * bitDepth;
+                packed[y * stride + (bit >> 3)] |= (byte) (index << (8 - bitDepth - (bit & 7)));
+
+                // Distribute error to neighbors (7, 3, 5, 1 weights)
+                if (x + 1 < w)
+                    pixels[row + x + 1] += quantError * 7 / 16;
+                if (x - 1 >= 0 && y + 1 < h)
+                    pixels[row + w + x - 1] += quantError * 3 / 16;
+                if (y + 1 < h)
+                    pixels[row + w + x] += quantError * 5 / 16;
+                if (x + 1 < w && y + 1 < h)
+                    pixels[row + w + x + 1] += quantError * 1 / 16;
+            }
+        }
+    }
+}
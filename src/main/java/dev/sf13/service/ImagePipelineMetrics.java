@@ -0,0 +1,160 @@
+package dev.sf13.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timers, summaries and child spans for the individual stages of an image render.
+ * <p>
+ * Meters are registered once per (endpoint, profile) {@link Pipeline}. Callers resolve their
+ * pipeline once (typically in {@code @PostConstruct}) and hand it to {@link ImageService}, so
+ * recording a stage does not look up or build meters on the request path.
+ */
+@ApplicationScoped
+public class ImagePipelineMetrics {
+
+    public enum Stage {
+        DECODE, RESAMPLE, DITHER, ENCODE;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+        final String spanName = "ImageService." + tag;
+    }
+
+    public static final String ENDPOINT_IMAGE = "image";
+    public static final String ENDPOINT_DITHERED = "dithered";
+    public static final String ENDPOINT_INGEST = "ingest";
+    public static final String ENDPOINT_DEVICE = "device";
+    public static final String ENDPOINT_CONTACT_SHEET = "contact-sheet";
+    public static final String ENDPOINT_REGION = "region";
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    Tracer tracer;
+
+    private final ConcurrentHashMap<String, Pipeline> pipelines = new ConcurrentHashMap<>();
+
+    private Pipeline unspecified;
+
+    @PostConstruct
+    void init() {
+        unspecified = pipeline("unspecified", "unspecified");
+    }
+
+    /**
+     * Returns the (cached) pipeline for the given tags, registering its meters on first use.
+     */
+    public Pipeline pipeline(String endpoint, String profile) {
+        return pipelines.computeIfAbsent(endpoint + '|' + profile, key -> new Pipeline(endpoint, profile));
+    }
+
+    /**
+     * Pipeline used by callers that do not say which endpoint they render for.
+     */
+    public Pipeline unspecified() {
+        return unspecified;
+    }
+
+    public final class Pipeline {
+        private final String endpoint;
+        private final String profile;
+        private final Timer[] stageTimers = new Timer[Stage.values().length];
+        private final DistributionSummary[] throughput = new DistributionSummary[Stage.values().length];
+        private final DistributionSummary inputBytes;
+        private final DistributionSummary outputBytes;
+        private final DistributionSummary rasterBytes;
+        private final AtomicLong peakRasterBytes = new AtomicLong();
+
+        Pipeline(String endpoint, String profile) {
+            this.endpoint = endpoint;
+            this.profile = profile;
+            Tags tags = Tags.of("endpoint", endpoint, "profile", profile);
+            for (Stage stage : Stage.values()) {
+                stageTimers[stage.ordinal()] = Timer.builder("image.pipeline.stage")
+                        .description("Time spent in one stage of an image render")
+                        .tags(tags).tag("stage", stage.tag)
+                        .publishPercentileHistogram()
+                        .register(registry);
+                throughput[stage.ordinal()] = DistributionSummary.builder("image.pipeline.throughput")
+                        .description("Pixel throughput of one stage of an image render")
+                        .baseUnit("megapixels_per_second")
+                        .tags(tags).tag("stage", stage.tag)
+                        .register(registry);
+            }
+            inputBytes = DistributionSummary.builder("image.pipeline.input.size")
+                    .description("Encoded size of images fed into a render")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+            outputBytes = DistributionSummary.builder("image.pipeline.output.size")
+                    .description("Encoded size of rendered images")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+            rasterBytes = DistributionSummary.builder("image.pipeline.raster.size")
+                    .description("Size of decoded rasters held in memory during a render")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+            Gauge.builder("image.pipeline.raster.peak", peakRasterBytes, AtomicLong::get)
+                    .description("Largest decoded raster seen during a render")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+        }
+
+        /**
+         * Starts a child span of the current span for the given stage.
+         */
+        public Span startSpan(Stage stage) {
+            return tracer.spanBuilder(stage.spanName)
+                    .setAttribute("image.endpoint", endpoint)
+                    .setAttribute("image.profile", profile)
+                    .startSpan();
+        }
+
+        /**
+         * Ends the span, records the stage duration and, when {@code pixels > 0}, the throughput.
+         */
+        public void end(Stage stage, Span span, long startNanos, long pixels) {
+            long elapsed = System.nanoTime() - startNanos;
+            span.end();
+            stageTimers[stage.ordinal()].record(elapsed, TimeUnit.NANOSECONDS);
+            if (pixels > 0 && elapsed > 0) {
+                // pixels per nanosecond * 1000 = megapixels per second
+                throughput[stage.ordinal()].record(pixels * 1000.0 / elapsed);
+            }
+        }
+
+        public void recordInput(long bytes) {
+            inputBytes.record(bytes);
+        }
+
+        public void recordOutput(int bytes) {
+            outputBytes.record(bytes);
+        }
+
+        public void recordRaster(BufferedImage image) {
+            DataBuffer buffer = image.getRaster().getDataBuffer();
+            long bytes = (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+            rasterBytes.record(bytes);
+            peakRasterBytes.accumulateAndGet(bytes, Math::max);
+        }
+    }
+}
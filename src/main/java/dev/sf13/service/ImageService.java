@@ -4,17 +4,34 @@ import jakarta.enterprise.context.ApplicationScoped;
 import io.quarkus.logging.Log;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.DistributionSummary;
+import dev.sf13.service.ImagePipelineMetrics.Pipeline;
+import dev.sf13.service.ImagePipelineMetrics.Stage;
+import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
 
 @ApplicationScoped
@@ -23,45 +40,83 @@ public class ImageService {
     @ConfigProperty(name = "wikipedia.user-agent")
     String userAgent;
 
+    // Sources larger than this are subsampled while decoding so the raster never exceeds it
+    @ConfigProperty(name = "render.admission.max-input-pixels", defaultValue = "50000000")
+    long maxInputPixels;
+
+    // Renditions are derived from a working master whose long edge is capped at this size
+    @ConfigProperty(name = "image.master.max-edge", defaultValue = "2560")
+    int masterMaxEdge;
+
+    @ConfigProperty(name = "image.master.quality", defaultValue = "0.92")
+    float masterQuality;
+
+    @ConfigProperty(name = "image.region.quality", defaultValue = "0.9")
+    float regionQuality;
+
     @Inject
     MeterRegistry registry;
 
     @Inject
     SvgConverter svgConverter;
 
+    @Inject
+    ImagePipelineMetrics pipelineMetrics;
+
+    @Inject
+    GrayscaleDitherer ditherer;
+
+    @Inject
+    RangeDownloader rangeDownloader;
+
+    private DistributionSummary downloadSize;
+
+    @PostConstruct
+    void init() {
+        downloadSize = DistributionSummary.builder("image.download.size")
+            .description("Size of downloaded images in bytes")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    /**
+     * Downloads an image, converting SVG to PNG. Large files on servers that support it are
+     * fetched as parallel, resumable range requests (see {@link RangeDownloader}); everything
+     * else in one sequential stream.
+     */
     @WithSpan("ImageService.downloadImage")
     public byte[] downloadImage(String url) throws IOException {
         Log.infof("Downloading image from %s", url);
-        java.net.URLConnection connection = java.net.URI.create(url).toURL().openConnection();
-        connection.setRequestProperty("User-Agent", userAgent);
-        try (InputStream in = connection.getInputStream()) {
-            byte[] bytes = in.readAllBytes();
+        byte[] bytes = rangeDownloader.download(url);
+        if (bytes == null) {
+            java.net.URLConnection connection = java.net.URI.create(url).toURL().openConnection();
+            connection.setRequestProperty("User-Agent", userAgent);
+            try (InputStream in = connection.getInputStream()) {
+                bytes = in.readAllBytes();
+            }
             Log.infof("Downloaded %d bytes from %s", bytes.length, url);
+        }
 
-            DistributionSummary.builder("image.download.size")
-                .description("Size of downloaded images in bytes")
-                .baseUnit("bytes")
-                .register(registry)
-                .record(bytes.length);
+        downloadSize.record(bytes.length);
 
-            if (svgConverter.isSvg(bytes)) {
-                Log.info("Detected SVG image. Converting to PNG...");
-                return svgConverter.convertSvgToPng(bytes);
-            }
-            return bytes;
+        if (svgConverter.isSvg(bytes)) {
+            Log.info("Detected SVG image. Converting to PNG...");
+            return svgConverter.convertSvgToPng(bytes);
         }
+        return bytes;
     }
 
-    @WithSpan("ImageService.scaleImage")
     public byte[] scaleImage(byte[] imageData, Integer width, Integer height) throws IOException {
+        return scaleImage(imageData, width, height, pipelineMetrics.unspecified());
+    }
+
+    @WithSpan("ImageService.scaleImage")
+    public byte[] scaleImage(byte[] imageData, Integer width, Integer height, Pipeline pipeline) throws IOException {
         Log.debugf("Scaling image to width=%s, height=%s", width, height);
         if (width == null && height == null) {
             return imageData;
         }
-        BufferedImage original = ImageIO.read(new ByteArrayInputStream(imageData));
-        if (original == null) {
-            throw new IOException("Failed to read image data during scaling. The data may be corrupted or in an unsupported format.");
-        }
+        BufferedImage original = decode(imageData, pipeline, "Failed to read image data during scaling. The data may be corrupted or in an unsupported format.");
         int originalWidth = original.getWidth();
         int originalHeight = original.getHeight();
 
@@ -79,33 +134,92 @@ public class ImageService {
             newWidth = (int) (((double) height / originalHeight) * originalWidth);
         }
 
-        Image scaled = original.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
-        BufferedImage bufferedScaled = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-        bufferedScaled.getGraphics().drawImage(scaled, 0, 0, null);
+        Span span = pipeline.startSpan(Stage.RESAMPLE);
+        long start = System.nanoTime();
+        BufferedImage bufferedScaled;
+        try {
+            Image scaled = original.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
+            bufferedScaled = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+            bufferedScaled.getGraphics().drawImage(scaled, 0, 0, null);
+        } finally {
+            pipeline.end(Stage.RESAMPLE, span, start, (long) newWidth * newHeight);
+        }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(bufferedScaled, "png", baos);
-        return baos.toByteArray();
+        return encode(bufferedScaled, pipeline);
     }
 
-    @WithSpan("ImageService.scaleImageAndCenter")
     public byte[] scaleImageAndCenter(byte[] imageData, int targetWidth, int targetHeight) throws IOException {
+        return scaleImageAndCenter(imageData, targetWidth, targetHeight, pipelineMetrics.unspecified());
+    }
+
+    @WithSpan("ImageService.scaleImageAndCenter")
+    public byte[] scaleImageAndCenter(byte[] imageData, int targetWidth, int targetHeight, Pipeline pipeline) throws IOException {
         Log.debugf("Scaling and centering image to %dx%d (Cover Mode)", targetWidth, targetHeight);
-        BufferedImage original = ImageIO.read(new ByteArrayInputStream(imageData));
-        if (original == null) {
-            throw new IOException("Failed to read image data during scaling and centering. The data may be corrupted or in an unsupported format.");
+        BufferedImage original = decode(imageData, pipeline, "Failed to read image data during scaling and centering. The data may be corrupted or in an unsupported format.");
+
+        Span span = pipeline.startSpan(Stage.RESAMPLE);
+        long start = System.nanoTime();
+        BufferedImage background;
+        try {
+            background = fit(original, targetWidth, targetHeight, FitMode.COVER);
+        } finally {
+            pipeline.end(Stage.RESAMPLE, span, start, (long) targetWidth * targetHeight);
         }
 
+        return encode(background, pipeline);
+    }
+
+    /**
+     * Renders the exact payload for a device profile in one pass: decode, fit, rotate,
+     * dither and encode, without intermediate PNG round-trips.
+     */
+    @WithSpan("ImageService.renderForDevice")
+    public byte[] renderForDevice(byte[] imageData, DeviceProfile profile, Pipeline pipeline) throws IOException {
+        Log.debugf("Rendering image for device profile %s", profile.name());
+        BufferedImage original = decode(imageData, pipeline, "Failed to read image data during device rendering. The data may be corrupted or in an unsupported format.");
+
+        // Fit in picture orientation, then turn into the panel's framebuffer orientation
+        boolean quarterTurn = profile.rotation() == 90 || profile.rotation() == 270;
+        int fitWidth = quarterTurn ? profile.height() : profile.width();
+        int fitHeight = quarterTurn ? profile.width() : profile.height();
+
+        Span span = pipeline.startSpan(Stage.RESAMPLE);
+        long start = System.nanoTime();
+        BufferedImage fitted;
+        try {
+            fitted = rotate(fit(original, fitWidth, fitHeight, profile.fit()), profile.rotation());
+        } finally {
+            pipeline.end(Stage.RESAMPLE, span, start, (long) fitWidth * fitHeight);
+        }
+
+        span = pipeline.startSpan(Stage.DITHER);
+        start = System.nanoTime();
+        BufferedImage dithered;
+        try {
+            dithered = ditherer.dither(fitted, profile.bitDepth(), profile.dither(), GrayscaleDitherer.noiseSeed(imageData));
+        } finally {
+            pipeline.end(Stage.DITHER, span, start, (long) fitted.getWidth() * fitted.getHeight());
+        }
+
+        if (profile.format() == RenditionFormat.RAW) {
+            byte[] packed = GrayscaleDitherer.packedPixels(dithered);
+            pipeline.recordOutput(packed.length);
+            return packed;
+        }
+        return encode(dithered, pipeline);
+    }
+
+    private BufferedImage fit(BufferedImage original, int targetWidth, int targetHeight, FitMode mode) {
         // --- CHANGE 1: Logic Swap from "Fit" to "Fill" ---
         // We calculate the scale factor required for both width and height.
-        // To FILL the screen, we pick the LARGER scale factor.
-        // (To "fit" with borders, you would pick the smaller one).
+        // To FILL the screen (COVER), we pick the LARGER scale factor.
+        // To "fit" with borders (CONTAIN), we pick the smaller one.
         double scaleWidth = (double) targetWidth / original.getWidth();
         double scaleHeight = (double) targetHeight / original.getHeight();
-        double scale = Math.max(scaleWidth, scaleHeight);
+        double scale = mode == FitMode.CONTAIN ? Math.min(scaleWidth, scaleHeight) : Math.max(scaleWidth, scaleHeight);
 
-        int newWidth = (int) (original.getWidth() * scale);
-        int newHeight = (int) (original.getHeight() * scale);
+        int newWidth = mode == FitMode.STRETCH ? targetWidth : (int) (original.getWidth() * scale);
+        int newHeight = mode == FitMode.STRETCH ? targetHeight : (int) (original.getHeight() * scale);
         // ------------------------------------------------
 
         BufferedImage background = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
@@ -116,105 +230,399 @@ public class ImageService {
         g2d.setRenderingHint(java.awt.RenderingHints.KEY_RENDERING, java.awt.RenderingHints.VALUE_RENDER_QUALITY);
         g2d.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
 
-        // Fill background (just in case, though the image should cover it now)
+        // Fill background (the letterbox for CONTAIN; fully covered otherwise)
         g2d.setColor(Color.WHITE);
         g2d.fillRect(0, 0, targetWidth, targetHeight);
 
         // Calculate center position
-        // Since newWidth/Height are >= target, these values will be 0 or negative
+        // For COVER newWidth/Height are >= target, so these values will be 0 or negative
         // which correctly "shifts" the image to center it.
         int x = (targetWidth - newWidth) / 2;
         int y = (targetHeight - newHeight) / 2;
 
         g2d.drawImage(original, x, y, newWidth, newHeight, null);
         g2d.dispose();
+        return background;
+    }
+
+    /**
+     * Exact clockwise quarter-turn rotation (no resampling).
+     */
+    private static BufferedImage rotate(BufferedImage src, int degrees) {
+        if (degrees == 0) {
+            return src;
+        }
+        int w = src.getWidth();
+        int h = src.getHeight();
+        boolean quarterTurn = degrees == 90 || degrees == 270;
+        BufferedImage dst = new BufferedImage(quarterTurn ? h : w, quarterTurn ? w : h, BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            src.getRGB(0, y, w, 1, row, 0, w);
+            for (int x = 0; x < w; x++) {
+                switch (degrees) {
+                    case 90 -> dst.setRGB(h - 1 - y, x, row[x]);
+                    case 180 -> dst.setRGB(w - 1 - x, h - 1 - y, row[x]);
+                    default -> dst.setRGB(y, w - 1 - x, row[x]);
+                }
+            }
+        }
+        return dst;
+    }
+
+    public byte[] ditherImage(byte[] originalImageData) throws IOException {
+        return ditherImage(originalImageData, pipelineMetrics.unspecified());
+    }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(background, "png", baos);
-        return baos.toByteArray();
+    public byte[] ditherImage(byte[] originalImageData, Pipeline pipeline) throws IOException {
+        return ditherImage(originalImageData, 1, RenditionFormat.PNG, pipeline);
     }
 
+    /**
+     * Dithers to {@code 2^bitDepth} gray levels (bit depth 1, 2 or 4) and encodes the result
+     * as a packed PNG or as raw framebuffer bytes.
+     */
     @WithSpan("ImageService.ditherImage")
-    public byte[] ditherImage(byte[] originalImageData) throws IOException {
-        Log.debug("Starting Floyd-Steinberg dithering...");
-        BufferedImage original = ImageIO.read(new ByteArrayInputStream(originalImageData));
-        if (original == null) {
-            throw new IOException("Failed to read image data during dithering. The data may be corrupted or in an unsupported format.");
+    public byte[] ditherImage(byte[] originalImageData, int bitDepth, RenditionFormat format, Pipeline pipeline) throws IOException {
+        Log.debugf("Starting Floyd-Steinberg dithering to %d bit(s)...", bitDepth);
+        BufferedImage original = decode(originalImageData, pipeline, "Failed to read image data during dithering. The data may be corrupted or in an unsupported format.");
+
+        Span span = pipeline.startSpan(Stage.DITHER);
+        long start = System.nanoTime();
+        BufferedImage dithered;
+        try {
+            dithered = ditherer.dither(original, bitDepth, GrayscaleDitherer.noiseSeed(originalImageData));
+        } finally {
+            pipeline.end(Stage.DITHER, span, start, (long) original.getWidth() * original.getHeight());
         }
-        BufferedImage dithered = applyFloydSteinbergDithering(original);
         Log.debug("Dithering complete.");
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(dithered, "png", baos);
-        return baos.toByteArray();
+        if (format == RenditionFormat.RAW) {
+            byte[] packed = GrayscaleDitherer.packedPixels(dithered);
+            pipeline.recordOutput(packed.length);
+            return packed;
+        }
+        return encode(dithered, pipeline);
+    }
+
+    /**
+     * Reads the image dimensions from the header without decoding any pixels.
+     */
+    public Dimension readDimensions(byte[] imageData) throws IOException {
+        return readDimensions(new ByteArrayInputStream(imageData));
+    }
+
+    /**
+     * Like {@link #readDimensions(byte[])}, reading only as much of {@code in} as the header takes.
+     */
+    public Dimension readDimensions(InputStream in) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = readerFor(iis);
+            if (reader == null) {
+                throw new IOException("Failed to read image header. The data may be corrupted or in an unsupported format.");
+            }
+            try {
+                reader.setInput(iis, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
     }
 
-    private BufferedImage applyFloydSteinbergDithering(BufferedImage img) {
-        int w = img.getWidth();
-        int h = img.getHeight();
+    /**
+     * Hex SHA-256 of the encoded image, used to recognise the same file under another URL.
+     */
+    public static String contentHash(byte[] imageData) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(imageData));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 
-        // 1. Prepare the float array for error propagation
-        float[][] pixels = new float[w][h];
+    /**
+     * Smallest integer subsampling factor that brings {@code pixels} within {@code maxPixels}.
+     */
+    static int subsamplingFactor(long pixels, long maxPixels) {
+        if (maxPixels <= 0 || pixels <= maxPixels) {
+            return 1;
+        }
+        int factor = (int) Math.ceil(Math.sqrt((double) pixels / maxPixels));
+        while (pixels / ((long) factor * factor) > maxPixels) {
+            factor++;
+        }
+        return factor;
+    }
 
-        // 2. Convert to Grayscale AND add Noise
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                Color c = new Color(img.getRGB(x, y));
+    private static ImageReader readerFor(ImageInputStream iis) {
+        if (iis == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        return readers.hasNext() ? readers.next() : null;
+    }
 
-                // Use Luma formula (Human eyes are more sensitive to Green)
-                float gray = (c.getRed() * 0.299f + c.getGreen() * 0.587f + c.getBlue() * 0.114f);
+    /**
+     * Equivalent of {@link ImageIO#read(ImageInputStream)}, except that sources above the
+     * input pixel budget are subsampled by the reader instead of being decoded in full.
+     */
+    private BufferedImage read(byte[] imageData) throws IOException {
+        return read(imageData, 0, 0);
+    }
 
-                // --- NOISE INJECTION START ---
-                // Add a tiny bit of random noise (approx +/- 10 on a 0-255 scale)
-                // This prevents the "worm" artifacts in flat gray areas by breaking the mathematical pattern.
-                float noise = (float) ((Math.random() - 0.5) * 10);
-                gray = gray + noise;
+    /**
+     * Like {@link #read(byte[])}, but additionally subsamples as far as possible while keeping
+     * the decoded image at least {@code minWidth x minHeight}. Used for thumbnails, where
+     * decoding every source pixel only to throw most of them away dominates the cost.
+     */
+    private BufferedImage read(byte[] imageData, int minWidth, int minHeight) throws IOException {
+        return read(imageData, null, minWidth, minHeight);
+    }
 
-                // Clamp strictly between 0 and 255 just in case noise pushed it over
-                gray = Math.max(0, Math.min(255, gray));
-                // --- NOISE INJECTION END ---
+    /**
+     * Like {@link #read(byte[], int, int)}, restricted to the {@code region} window of the source
+     * (null for all of it). Only the window is kept in memory, whatever the size of the source.
+     */
+    private BufferedImage read(byte[] imageData, Rectangle region, int minWidth, int minHeight) throws IOException {
+        return read(new ByteArrayInputStream(imageData), region, minWidth, minHeight);
+    }
 
-                pixels[x][y] = gray;
+    /**
+     * Like {@link #read(byte[], Rectangle, int, int)}, from a stream, e.g. of a database blob.
+     */
+    private BufferedImage read(InputStream in, Rectangle region, int minWidth, int minHeight) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = readerFor(iis);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(iis, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if (region != null) {
+                    param.setSourceRegion(region);
+                    sourceWidth = region.width;
+                    sourceHeight = region.height;
+                }
+                int factor = subsamplingFactor((long) sourceWidth * sourceHeight, maxInputPixels);
+                if (minWidth > 0 && minHeight > 0) {
+                    factor = Math.max(factor, Math.min(sourceWidth / minWidth, sourceHeight / minHeight));
+                }
+                if (factor > 1) {
+                    Log.debugf("Decoding %dx%d source subsampled by %d.", sourceWidth, sourceHeight, factor);
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
             }
         }
+    }
 
-        // 3. Apply Floyd-Steinberg Error Diffusion
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                float oldPixel = pixels[x][y];
-                float newPixel = oldPixel < 128 ? 0 : 255;
-                pixels[x][y] = newPixel;
-
-                float quantError = oldPixel - newPixel;
-
-                // Distribute error to neighbors (7, 3, 5, 1 weights)
-                if (x + 1 < w)
-                    pixels[x + 1][y] += quantError * 7 / 16;
-                if (x - 1 >= 0 && y + 1 < h)
-                    pixels[x - 1][y + 1] += quantError * 3 / 16;
-                if (y + 1 < h)
-                    pixels[x][y + 1] += quantError * 5 / 16;
-                if (x + 1 < w && y + 1 < h)
-                    pixels[x + 1][y + 1] += quantError * 1 / 16;
+    private BufferedImage decode(byte[] imageData, Pipeline pipeline, String failureMessage) throws IOException {
+        pipeline.recordInput(imageData.length);
+        Span span = pipeline.startSpan(Stage.DECODE);
+        long start = System.nanoTime();
+        BufferedImage image = null;
+        try {
+            image = read(imageData);
+        } finally {
+            pipeline.end(Stage.DECODE, span, start, image == null ? 0 : (long) image.getWidth() * image.getHeight());
+        }
+        if (image == null) {
+            throw new IOException(failureMessage);
+        }
+        pipeline.recordRaster(image);
+        return image;
+    }
+
+    /**
+     * Decodes just enough of the {@code size} bytes of source read from {@code in} to cover-crop
+     * it into a {@code width x height} tile.
+     */
+    @WithSpan("ImageService.thumbnail")
+    public BufferedImage thumbnail(InputStream in, long size, int width, int height, Pipeline pipeline) throws IOException {
+        BufferedImage image = decodeAtLeast(in, size, width, height, pipeline, "Failed to read image data for thumbnail. The data may be corrupted or in an unsupported format.");
+
+        Span span = pipeline.startSpan(Stage.RESAMPLE);
+        long start = System.nanoTime();
+        try {
+            return fit(image, width, height, FitMode.COVER);
+        } finally {
+            pipeline.end(Stage.RESAMPLE, span, start, (long) width * height);
+        }
+    }
+
+    /**
+     * Renders the {@code region} window of the source (in source pixels, within its bounds) at
+     * {@code width x height}, decoding only that window, subsampled as far as the output allows.
+     * The {@code size} bytes of source are read from {@code in}, e.g. a database blob stream.
+     */
+    @WithSpan("ImageService.renderRegion")
+    public byte[] renderRegion(InputStream in, long size, Rectangle region, int width, int height, Pipeline pipeline) throws IOException {
+        pipeline.recordInput(size);
+        Span span = pipeline.startSpan(Stage.DECODE);
+        long start = System.nanoTime();
+        BufferedImage window = null;
+        try {
+            window = read(in, region, width, height);
+        } finally {
+            pipeline.end(Stage.DECODE, span, start, window == null ? 0 : (long) window.getWidth() * window.getHeight());
+        }
+        if (window == null) {
+            throw new IOException("Failed to read image region. The data may be corrupted or in an unsupported format.");
+        }
+        pipeline.recordRaster(window);
+
+        span = pipeline.startSpan(Stage.RESAMPLE);
+        start = System.nanoTime();
+        BufferedImage scaled;
+        try {
+            // The JPEG writer takes plain RGB rasters as-is; anything else is redrawn
+            boolean rgb = window.getType() == BufferedImage.TYPE_INT_RGB || window.getType() == BufferedImage.TYPE_3BYTE_BGR;
+            scaled = rgb && window.getWidth() == width && window.getHeight() == height
+                    ? window
+                    : fit(window, width, height, FitMode.STRETCH);
+        } finally {
+            pipeline.end(Stage.RESAMPLE, span, start, (long) width * height);
+        }
+        return encodeJpeg(scaled, regionQuality, pipeline);
+    }
+
+    /**
+     * 64-bit difference hash (dHash) of the image: the image squeezed to 9x8 gray pixels, one
+     * bit per horizontally adjacent pair, set when the left pixel is brighter. Robust to
+     * rescaling and recompression, so the same picture under another URL or size hashes to
+     * (nearly) the same value; compare with {@link Long#bitCount(long)} of the XOR.
+     */
+    public long perceptualHash(byte[] imageData) throws IOException {
+        return perceptualHash(new ByteArrayInputStream(imageData));
+    }
+
+    public long perceptualHash(InputStream in) throws IOException {
+        // Decode at a modest size and area-average from there, subsampling alone would alias
+        BufferedImage image = read(in, null, 64, 64);
+        if (image == null) {
+            throw new IOException("Failed to read image data for hashing. The data may be corrupted or in an unsupported format.");
+        }
+        BufferedImage small = new BufferedImage(9, 8, BufferedImage.TYPE_INT_RGB);
+        small.getGraphics().drawImage(image.getScaledInstance(9, 8, Image.SCALE_SMOOTH), 0, 0, null);
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                hash = (hash << 1) | (luma(small.getRGB(x, y)) > luma(small.getRGB(x + 1, y)) ? 1 : 0);
             }
         }
+        return hash;
+    }
 
-        // 4. Output as strictly 1-bit Binary (Crucial for TRMNL)
-        BufferedImage dithered = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY);
+    private static int luma(int rgb) {
+        return (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+    }
 
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                // Since we already quantized to 0 or 255 in the loop above,
-                // we just map those to Black or White.
-                int val = (int) pixels[x][y];
-                // Safety clamp again just to be sure
-                val = Math.min(255, Math.max(0, val));
-
-                int rgb = (val < 128) ? Color.BLACK.getRGB() : Color.WHITE.getRGB();
-                dithered.setRGB(x, y, rgb);
+    /**
+     * Produces the working master that renditions are derived from: the original downscaled so
+     * its long edge is at most {@code image.master.max-edge}, as a high-quality JPEG. Returns
+     * null for originals that already fit, which are their own master
+     * ({@link dev.sf13.entity.PictureOfTheDay#renderSource()}) and are not stored twice.
+     */
+    @WithSpan("ImageService.createWorkingMaster")
+    public byte[] createWorkingMaster(byte[] originalImageData, Pipeline pipeline) throws IOException {
+        Dimension size = readDimensions(originalImageData);
+        if (!needsWorkingMaster(size)) {
+            return null;
+        }
+        int longEdge = Math.max(size.width, size.height);
+        double scale = (double) masterMaxEdge / longEdge;
+        int width = Math.max(1, (int) Math.round(size.width * scale));
+        int height = Math.max(1, (int) Math.round(size.height * scale));
+
+        // Subsample while decoding, but keep twice the target resolution for the area-averaging resample
+        BufferedImage original = decodeAtLeast(originalImageData, width * 2, height * 2, pipeline, "Failed to read image data for the working master. The data may be corrupted or in an unsupported format.");
+
+        Span span = pipeline.startSpan(Stage.RESAMPLE);
+        long start = System.nanoTime();
+        BufferedImage master;
+        try {
+            Image scaled = original.getScaledInstance(width, height, Image.SCALE_SMOOTH);
+            master = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            java.awt.Graphics2D g2d = master.createGraphics();
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, width, height);
+            g2d.drawImage(scaled, 0, 0, null);
+            g2d.dispose();
+        } finally {
+            pipeline.end(Stage.RESAMPLE, span, start, (long) width * height);
+        }
+        Log.infof("Working master: %dx%d -> %dx%d", size.width, size.height, width, height);
+        return encodeJpeg(master, masterQuality, pipeline);
+    }
+
+    /**
+     * Whether an original of this size is larger than its working master would be.
+     */
+    public boolean needsWorkingMaster(Dimension size) {
+        return Math.max(size.width, size.height) > masterMaxEdge;
+    }
+
+    private BufferedImage decodeAtLeast(byte[] imageData, int minWidth, int minHeight, Pipeline pipeline, String failureMessage) throws IOException {
+        return decodeAtLeast(new ByteArrayInputStream(imageData), imageData.length, minWidth, minHeight, pipeline, failureMessage);
+    }
+
+    private BufferedImage decodeAtLeast(InputStream in, long size, int minWidth, int minHeight, Pipeline pipeline, String failureMessage) throws IOException {
+        pipeline.recordInput(size);
+        Span span = pipeline.startSpan(Stage.DECODE);
+        long start = System.nanoTime();
+        BufferedImage image = null;
+        try {
+            image = read(in, null, minWidth, minHeight);
+        } finally {
+            pipeline.end(Stage.DECODE, span, start, image == null ? 0 : (long) image.getWidth() * image.getHeight());
+        }
+        if (image == null) {
+            throw new IOException(failureMessage);
+        }
+        pipeline.recordRaster(image);
+        return image;
+    }
+
+    /**
+     * Encodes photographic content as JPEG, which is far smaller and faster to decode than PNG.
+     */
+    public byte[] encodeJpeg(BufferedImage image, float quality, Pipeline pipeline) throws IOException {
+        Span span = pipeline.startSpan(Stage.ENCODE);
+        long start = System.nanoTime();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(image, null, null), param);
             }
+            pipeline.recordOutput(baos.size());
+            return baos.toByteArray();
+        } finally {
+            writer.dispose();
+            pipeline.end(Stage.ENCODE, span, start, (long) image.getWidth() * image.getHeight());
         }
+    }
 
-        return dithered;
+    private byte[] encode(BufferedImage image, Pipeline pipeline) throws IOException {
+        Span span = pipeline.startSpan(Stage.ENCODE);
+        long start = System.nanoTime();
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", baos);
+            pipeline.recordOutput(baos.size());
+            return baos.toByteArray();
+        } finally {
+            pipeline.end(Stage.ENCODE, span, start, (long) image.getWidth() * image.getHeight());
+        }
     }
 }
@@ -0,0 +1,157 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills in what ingest derives from the original (working master, perceptual hash) for pictures
+ * ingested before those existed. Runs once in the background after startup, on whichever replica
+ * takes the {@value #LEASE} lease, one picture per transaction; until a row is done its
+ * renditions keep being derived from the original and it is not found by similarity lookups.
+ * <p>
+ * Originals that already fit the working master size are recognised from their header and
+ * keep no master, so they are neither loaded nor stored twice. Every row that has been looked at
+ * is marked {@link PictureOfTheDay#masterChecked} (rows with nothing to store in batches of
+ * {@value #MARK_BATCH}), so later startups select only rows that were not checked yet.
+ */
+@ApplicationScoped
+public class IngestBackfill {
+
+    static final String LEASE = "ingest-backfill";
+
+    static final int MARK_BATCH = 500;
+
+    @ConfigProperty(name = "ingest.backfill.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    ImageService imageService;
+
+    @Inject
+    OriginalImageStore store;
+
+    @Inject
+    LeaderLease lease;
+
+    @Inject
+    ImagePipelineMetrics pipelineMetrics;
+
+    void onStart(@Observes StartupEvent event) {
+        if (enabled) {
+            Infrastructure.getDefaultWorkerPool().execute(this::run);
+        }
+    }
+
+    void run() {
+        if (!lease.tryAcquire(LEASE)) {
+            Log.debugf("Skipping ingest backfill: lease %s is held by another replica", LEASE);
+            return;
+        }
+        try {
+            backfill();
+        } finally {
+            lease.release(LEASE);
+        }
+    }
+
+    private void backfill() {
+        List<Object[]> rows = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.getEntityManager()
+                .createQuery("select id, case when workingImage is null then true else false end, perceptualHash from PictureOfTheDay"
+                        + " where originalImage is not null and masterChecked = false", Object[].class)
+                .getResultList());
+        if (rows.isEmpty()) {
+            return;
+        }
+        Log.infof("Checking %d existing pictures for missing working masters and perceptual hashes...", rows.size());
+        ImagePipelineMetrics.Pipeline pipeline = pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_INGEST, "working-master");
+        long renewInterval = lease.ttl().dividedBy(4).toNanos();
+        long renewedAt = System.nanoTime();
+        List<Long> unchanged = new ArrayList<>();
+        int done = 0;
+        for (Object[] row : rows) {
+            // Renewing the lease as we go keeps a long backfill from being started again elsewhere
+            if (System.nanoTime() - renewedAt > renewInterval) {
+                if (!lease.tryAcquire(LEASE)) {
+                    Log.warnf("Lost lease %s, stopping the backfill", LEASE);
+                    break;
+                }
+                renewedAt = System.nanoTime();
+            }
+            long id = (Long) row[0];
+            try {
+                if (backfill(id, (Boolean) row[1], row[2] == null, pipeline)) {
+                    done++;
+                } else {
+                    unchanged.add(id);
+                }
+            } catch (IOException e) {
+                // The image cannot be decoded; trying again on every startup would not change that
+                Log.warnf(e, "Could not backfill picture %d", id);
+                unchanged.add(id);
+            } catch (RuntimeException e) {
+                Log.warnf(e, "Could not backfill picture %d, retrying on the next startup", id);
+            }
+            if (unchanged.size() >= MARK_BATCH) {
+                markChecked(unchanged);
+            }
+        }
+        markChecked(unchanged);
+        Log.infof("Backfilled %d of %d pictures.", done, rows.size());
+    }
+
+    private void markChecked(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        QuarkusTransaction.requiringNew().run(() -> PictureOfTheDay.update("masterChecked = true where id in ?1", ids));
+        ids.clear();
+    }
+
+    /**
+     * Backfills one picture and marks it checked. Returns false if there was nothing to store, in
+     * which case marking it is left to the caller.
+     */
+    private boolean backfill(long id, boolean noMaster, boolean noHash, ImagePipelineMetrics.Pipeline pipeline) throws IOException {
+        byte[] master = null;
+        // The header decides, so originals that already fit are never loaded
+        if (noMaster && imageService.needsWorkingMaster(store.read(id, false, imageService::readDimensions))) {
+            byte[] original = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.getEntityManager()
+                    .createQuery("select originalImage from PictureOfTheDay where id = ?1", byte[].class)
+                    .setParameter(1, id)
+                    .getSingleResult());
+            master = imageService.createWorkingMaster(original, pipeline);
+        }
+        Long hash = null;
+        if (noHash) {
+            hash = master != null ? imageService.perceptualHash(master) : store.read(id, !noMaster, imageService::perceptualHash);
+        }
+        if (master == null && hash == null) {
+            return false;
+        }
+        byte[] workingImage = master;
+        Long perceptualHash = hash;
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay.update("masterChecked = true where id = ?1", id);
+            if (workingImage != null) {
+                PictureOfTheDay.update("workingImage = ?1 where id = ?2", workingImage, id);
+            }
+            if (perceptualHash != null) {
+                PictureOfTheDay.update("perceptualHash = ?1, phashBand0 = ?2, phashBand1 = ?3, phashBand2 = ?4, phashBand3 = ?5 where id = ?6",
+                        perceptualHash, PictureOfTheDay.band(perceptualHash, 0), PictureOfTheDay.band(perceptualHash, 1),
+                        PictureOfTheDay.band(perceptualHash, 2), PictureOfTheDay.band(perceptualHash, 3), id);
+            }
+        });
+        return true;
+    }
+}
@@ -0,0 +1,119 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.SchedulerLease;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Database-backed leases that elect one replica to run a scheduled job.
+ * <p>
+ * A lease is a row in {@code scheduler_lease} with a holder and an expiry. A replica takes it
+ * if it is free, expired or already its own; the row's version column makes concurrent
+ * attempts conflict so exactly one wins. Plain JPA on a lock table, so it behaves the same on
+ * H2 and Postgres. A crashed holder is replaced once its lease expires.
+ */
+@ApplicationScoped
+public class LeaderLease {
+
+    @ConfigProperty(name = "scheduler.lease.ttl", defaultValue = "PT55M")
+    Duration ttl;
+
+    @ConfigProperty(name = "scheduler.instance-id")
+    Optional<String> configuredInstanceId;
+
+    @Inject
+    MeterRegistry registry;
+
+    private String instanceId;
+    private final ConcurrentHashMap<String, AtomicInteger> leader = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        instanceId = configuredInstanceId.orElseGet(() ->
+                Optional.ofNullable(System.getenv("HOSTNAME")).orElse("instance") + "-" + UUID.randomUUID().toString().substring(0, 8));
+        Log.infof("Scheduler lease holder id: %s", instanceId);
+    }
+
+    public String instanceId() {
+        return instanceId;
+    }
+
+    public Duration ttl() {
+        return ttl;
+    }
+
+    /**
+     * Takes or renews the lease for {@code ttl}. Returns false if another replica holds it.
+     */
+    public boolean tryAcquire(String name) {
+        String result;
+        try {
+            result = QuarkusTransaction.requiringNew().call(() -> acquire(name));
+        } catch (RuntimeException e) {
+            // Lost the race on insert or version check against another replica
+            Log.debugf(e, "Lease %s acquisition conflicted", name);
+            result = "conflict";
+        }
+        boolean acquired = result.equals("acquired") || result.equals("renewed") || result.equals("takeover");
+        registry.counter("scheduler.lease.acquisitions", "lease", name, "result", result).increment();
+        leaderGauge(name).set(acquired ? 1 : 0);
+        if (result.equals("takeover")) {
+            Log.infof("Took over expired lease %s", name);
+        }
+        return acquired;
+    }
+
+    /**
+     * Gives the lease up early, so another replica does not have to wait for it to expire.
+     */
+    public void release(String name) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            SchedulerLease lease = SchedulerLease.findById(name);
+            if (lease != null && lease.holder.equals(instanceId)) {
+                lease.expiresAt = Instant.now();
+            }
+        });
+        leaderGauge(name).set(0);
+    }
+
+    private String acquire(String name) {
+        Instant now = Instant.now();
+        SchedulerLease lease = SchedulerLease.findById(name);
+        String result;
+        if (lease == null) {
+            lease = new SchedulerLease();
+            lease.name = name;
+            result = "acquired";
+        } else if (lease.holder.equals(instanceId)) {
+            result = "renewed";
+        } else if (lease.expiresAt.isBefore(now)) {
+            result = "takeover";
+        } else {
+            return "held-elsewhere";
+        }
+        if (!result.equals("renewed")) {
+            lease.acquiredAt = now;
+        }
+        lease.holder = instanceId;
+        lease.expiresAt = now.plus(ttl);
+        lease.persistAndFlush();
+        return result;
+    }
+
+    private AtomicInteger leaderGauge(String name) {
+        return leader.computeIfAbsent(name, n -> registry.gauge("scheduler.lease.leader", Tags.of("lease", n), new AtomicInteger()));
+    }
+}
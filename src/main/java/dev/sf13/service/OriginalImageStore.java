@@ -0,0 +1,302 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.PictureOfTheDay;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reads stored images straight from the database blobs instead of loading
+ * {@link PictureOfTheDay#originalImage} and friends into the heap.
+ * <p>
+ * Stored source images (the Wikimedia rendition downloaded at ingest, which is the full
+ * original only in archival mode, see {@link PictureOfTheDay#sourceUrl}) are copied to clients
+ * window by window: each window of {@code image.stream.window-size} bytes is read in its own
+ * short transaction and written out before the next one is fetched, so a slow client holds
+ * neither a pooled connection nor more than one window of memory. Every window re-checks the content hash: a picture replaced
+ * mid-download aborts the response rather than mixing two versions.
+ * <p>
+ * Renders decode straight from a blob stream ({@link #read}) in a short transaction of their
+ * own, so only the decoder's buffers, not the encoded image, are held while they run.
+ */
+@ApplicationScoped
+public class OriginalImageStore {
+
+    private static final String TABLE = "picture_of_the_day";
+
+    @ConfigProperty(name = "image.stream.window-size", defaultValue = "1048576")
+    int windowSize;
+
+    @Inject
+    MeterRegistry registry;
+
+    private DistributionSummary streamedBytes;
+
+    // Physical column names by lower-case property name without underscores, resolved on first use
+    private volatile Map<String, String> columns;
+
+    @PostConstruct
+    void init() {
+        streamedBytes = DistributionSummary.builder("image.stream.size")
+                .description("Bytes of stored originals streamed per response")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Row id, size and content hash of a stored source image. {@code originalUrl} is the
+     * Wikimedia original when the stored file is a reduced rendition of it, else null.
+     */
+    public record Stored(long id, long length, String contentHash, String originalUrl) {
+    }
+
+    /**
+     * Image the renditions of a picture are derived from, see {@link PictureOfTheDay#renderSource()}:
+     * the working master if there is one, else the original.
+     */
+    public record RenderSource(long id, LocalDate date, long length, boolean working) {
+    }
+
+    /**
+     * Consumes a blob stream, which is only valid during the call.
+     */
+    @FunctionalInterface
+    public interface BlobReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    /**
+     * Returns the stored source image of a picture, or {@code null} if there is none.
+     */
+    public Stored describe(String source, LocalDate date) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Object[] row = PictureOfTheDay.getEntityManager().createQuery(
+                            "select id, contentHash, imageUrl, sourceUrl from PictureOfTheDay where source = ?1 and date = ?2 and originalImage is not null", Object[].class)
+                    .setParameter(1, source)
+                    .setParameter(2, date)
+                    .getResultStream().findFirst().orElse(null);
+            if (row == null) {
+                return null;
+            }
+            long id = (Long) row[0];
+            long length = session().doReturningWork(connection -> {
+                try (PreparedStatement statement = select(connection, id); ResultSet rs = statement.executeQuery()) {
+                    return rs.next() ? length(rs.getBlob(1)) : -1L;
+                }
+            });
+            String imageUrl = (String) row[2];
+            String sourceUrl = (String) row[3];
+            String originalUrl = sourceUrl != null && !sourceUrl.equals(imageUrl) ? imageUrl : null;
+            return length < 0 ? null : new Stored(id, length, (String) row[1], originalUrl);
+        });
+    }
+
+    /**
+     * Writes {@code length} bytes of the original starting at {@code offset} to {@code out}.
+     *
+     * @throws IOException when the client goes away, or the picture was deleted or replaced
+     *                     since {@link #describe} (the response is then cut short)
+     */
+    public void copy(Stored stored, long offset, long length, OutputStream out) throws IOException {
+        byte[] window = new byte[(int) Math.min(windowSize, Math.max(length, 1))];
+        long position = offset;
+        long end = offset + length;
+        try {
+            while (position < end) {
+                int n = (int) Math.min(window.length, end - position);
+                long from = position;
+                QuarkusTransaction.requiringNew().run(() -> read(stored, from, window, n));
+                out.write(window, 0, n);
+                position += n;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            streamedBytes.record(position - offset);
+        }
+    }
+
+    /**
+     * Render sources of the pictures of {@code source} on the given {@code dates}, or if that is
+     * null between {@code from} and {@code to}, newest first and at most {@code limit}. One
+     * query that reads the blob lengths but not their contents.
+     */
+    public List<RenderSource> renderSources(String source, List<LocalDate> dates, LocalDate from, LocalDate to, int limit) {
+        if (dates != null && dates.isEmpty()) {
+            return List.of();
+        }
+        return QuarkusTransaction.requiringNew().call(() -> session().doReturningWork(connection -> {
+            String date = column(connection, "date");
+            String original = column(connection, "originalImage");
+            String sql = "select " + column(connection, "id") + ", " + date + ", " + column(connection, "workingImage") + ", " + original
+                    + " from " + TABLE + " where " + column(connection, "source") + " = ? and "
+                    + (dates != null ? date + " in (" + String.join(", ", Collections.nCopies(dates.size(), "?")) + ")" : date + " between ? and ?")
+                    + " and " + original + " is not null order by " + date + " desc";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, source);
+                List<LocalDate> params = dates != null ? dates : List.of(from, to);
+                for (int i = 0; i < params.size(); i++) {
+                    statement.setObject(i + 2, params.get(i));
+                }
+                statement.setMaxRows(limit);
+                List<RenderSource> sources = new ArrayList<>();
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        long working = length(rs.getBlob(3));
+                        sources.add(new RenderSource(rs.getLong(1), rs.getObject(2, LocalDate.class),
+                                working >= 0 ? working : length(rs.getBlob(4)), working >= 0));
+                    }
+                }
+                return sources;
+            }
+        }));
+    }
+
+    /**
+     * Runs {@code reader} on a stream of the render source, in a short transaction of its own.
+     *
+     * @throws IOException if the reader fails or the picture no longer has that image
+     */
+    public <T> T read(RenderSource source, BlobReader<T> reader) throws IOException {
+        return read(source.id(), source.working(), reader);
+    }
+
+    /**
+     * Runs {@code reader} on a stream of the stored original, in a short transaction of its own.
+     *
+     * @throws IOException if the reader fails or the picture was deleted or replaced since
+     *                     {@link #describe}
+     */
+    public <T> T read(Stored stored, BlobReader<T> reader) throws IOException {
+        return read(stored.id(), "originalImage", stored.contentHash(), reader);
+    }
+
+    /**
+     * Runs {@code reader} on a stream of the working master (or with {@code working} false the
+     * original) of picture {@code id}, in a short transaction of its own.
+     *
+     * @throws IOException if the reader fails or the picture does not have that image
+     */
+    public <T> T read(long id, boolean working, BlobReader<T> reader) throws IOException {
+        return read(id, working ? "workingImage" : "originalImage", null, reader);
+    }
+
+    private <T> T read(long id, String property, String contentHash, BlobReader<T> reader) throws IOException {
+        try {
+            return QuarkusTransaction.requiringNew().call(() -> session().doReturningWork(connection -> {
+                String sql = "select " + column(connection, property) + ", " + column(connection, "contentHash")
+                        + " from " + TABLE + " where " + column(connection, "id") + " = ?";
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setLong(1, id);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        Blob blob = rs.next() && (contentHash == null || contentHash.equals(rs.getString(2))) ? rs.getBlob(1) : null;
+                        if (blob == null) {
+                            throw new UncheckedIOException(new IOException("Image of picture " + id + " was deleted or replaced"));
+                        }
+                        try (InputStream in = blob.getBinaryStream()) {
+                            return reader.read(in);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        } finally {
+                            blob.free();
+                        }
+                    }
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void read(Stored stored, long offset, byte[] window, int length) {
+        session().doWork(connection -> {
+            try (PreparedStatement statement = select(connection, stored.id()); ResultSet rs = statement.executeQuery()) {
+                if (!rs.next() || !Objects.equals(rs.getString(2), stored.contentHash())) {
+                    throw new UncheckedIOException(new IOException("Original of picture " + stored.id() + " changed while streaming"));
+                }
+                Blob blob = rs.getBlob(1);
+                try (InputStream in = blob.getBinaryStream(offset + 1, length)) {
+                    if (in.readNBytes(window, 0, length) != length) {
+                        throw new UncheckedIOException(new IOException("Original of picture " + stored.id() + " is shorter than expected"));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    blob.free();
+                }
+            }
+        });
+    }
+
+    private PreparedStatement select(Connection connection, long id) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("select " + column(connection, "originalImage") + ", "
+                + column(connection, "contentHash") + " from " + TABLE + " where " + column(connection, "id") + " = ?");
+        statement.setLong(1, id);
+        return statement;
+    }
+
+    /**
+     * Looks the column name of a {@link PictureOfTheDay} property up in the result set metadata
+     * rather than hard-coding it, so it follows whatever naming strategy generated the schema.
+     */
+    private String column(Connection connection, String property) throws SQLException {
+        Map<String, String> names = columns;
+        if (names == null) {
+            names = new HashMap<>();
+            try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery("select * from " + TABLE + " where 1 = 0")) {
+                ResultSetMetaData metadata = rs.getMetaData();
+                for (int i = 1; i <= metadata.getColumnCount(); i++) {
+                    String name = metadata.getColumnName(i);
+                    names.put(name.replace("_", "").toLowerCase(Locale.ROOT), name);
+                }
+            }
+            columns = names;
+        }
+        String name = names.get(property.toLowerCase(Locale.ROOT));
+        if (name == null) {
+            throw new IllegalStateException("Could not find the " + property + " column of " + TABLE);
+        }
+        return name;
+    }
+
+    // Length of a nullable blob, -1 for null
+    private static long length(Blob blob) throws SQLException {
+        if (blob == null) {
+            return -1;
+        }
+        try {
+            return blob.length();
+        } finally {
+            blob.free();
+        }
+    }
+
+    private static Session session() {
+        return PictureOfTheDay.getEntityManager().unwrap(Session.class);
+    }
+}
@@ -0,0 +1,97 @@
+package dev.sf13.service;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Per-pixel loops of {@link GrayscaleDitherer} that do not depend on neighbouring pixels:
+ * RGB to luma conversion and threshold/ordered quantization.
+ * <p>
+ * {@link #best()} uses the Vector API ({@code jdk.incubator.vector}) when the application was
+ * built with {@code -PvectorKernels=true} and the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, and the plain loops below otherwise. Both
+ * produce bit-identical results (same float operations in the same order, no fused
+ * multiply-add), so dithered bytes do not depend on the node that rendered them.
+ */
+abstract class PixelKernels {
+
+    // Not io.quarkus.logging.Log: the JMH benchmarks load this class without Quarkus' bytecode transformation
+    private static final Logger LOG = Logger.getLogger(PixelKernels.class);
+
+    private static final PixelKernels SCALAR = new Scalar();
+    private static final PixelKernels BEST = load();
+
+    static PixelKernels scalar() {
+        return SCALAR;
+    }
+
+    static PixelKernels best() {
+        return BEST;
+    }
+
+    private static PixelKernels load() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            LOG.info("jdk.incubator.vector is not available; using scalar pixel kernels");
+            return SCALAR;
+        }
+        try {
+            PixelKernels vector = (PixelKernels) Class.forName("dev.sf13.service.VectorPixelKernels")
+                    .getDeclaredConstructor().newInstance();
+            LOG.infof("Using %s pixel kernels", vector.name());
+            return vector;
+        } catch (ClassNotFoundException e) {
+            LOG.info("Built without the Vector API pixel kernels (-PvectorKernels=true); using scalar ones");
+            return SCALAR;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOG.warnf(e, "Could not load the Vector API pixel kernels; using scalar ones");
+            return SCALAR;
+        }
+    }
+
+    abstract String name();
+
+    /**
+     * Writes the luma ({@code 0.299 R + 0.587 G + 0.114 B}, 0-255) of {@code length} packed
+     * RGB pixels to {@code dst[offset..]}.
+     */
+    abstract void luma(int[] rgb, float[] dst, int offset, int length);
+
+    /**
+     * Quantizes {@code values[offset..offset + length)} to palette indices
+     * {@code clamp((value + threshold + step / 2) / step, 0, maxIndex)}.
+     *
+     * @param thresholds per-pixel offsets added before quantizing (dither matrix row, or zeros)
+     */
+    abstract void quantize(float[] values, int offset, float[] thresholds, int[] indices, int length, float step, int maxIndex);
+
+    static float luma(int pixel) {
+        // Luma formula (Human eyes are more sensitive to Green)
+        return ((pixel >> 16) & 0xFF) * 0.299f + ((pixel >> 8) & 0xFF) * 0.587f + (pixel & 0xFF) * 0.114f;
+    }
+
+    static int quantize(float value, float half, float step, int maxIndex) {
+        return Math.min(maxIndex, Math.max(0, (int) ((value + half) / step)));
+    }
+
+    static final class Scalar extends PixelKernels {
+
+        @Override
+        String name() {
+            return "scalar";
+        }
+
+        @Override
+        void luma(int[] rgb, float[] dst, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                dst[offset + i] = luma(rgb[i]);
+            }
+        }
+
+        @Override
+        void quantize(float[] values, int offset, float[] thresholds, int[] indices, int length, float step, int maxIndex) {
+            float half = step / 2;
+            for (int i = 0; i < length; i++) {
+                indices[i] = quantize(values[offset + i] + thresholds[i], half, step, maxIndex);
+            }
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package dev.sf13.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.CompositeException;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Downloads large files as concurrent HTTP Range requests into a preallocated file.
+ * <p>
+ * A HEAD request decides whether it is worth it: the server has to advertise
+ * {@code Accept-Ranges: bytes} and a length of at least {@code image.download.range.min-size}.
+ * Completed chunks are recorded next to the partial file, so when a download fails the next
+ * attempt for the same URL (e.g. the next scrape) fetches only the missing chunks, as long as
+ * the server still reports the same validator ({@code ETag} or {@code Last-Modified}) and
+ * length. Range requests carry {@code If-Range}, so a file replaced mid-download is detected
+ * instead of stitched together. When Wikimedia's {@code X-Object-Meta-Sha1base36} header is
+ * present the assembled file is checked against it.
+ * <p>
+ * Downloads of the same URL share their partial files, so they run one after the other. The
+ * chunks are fetched on a pool of their own: the caller, itself usually a worker pool task,
+ * blocks until they are done and must not wait for threads of its own pool.
+ */
+@ApplicationScoped
+public class RangeDownloader {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+    private static final String SHA1_HEADER = "x-object-meta-sha1base36";
+
+    @ConfigProperty(name = "wikipedia.user-agent")
+    String userAgent;
+
+    // Files smaller than this (or of unknown size) are left to a plain sequential download
+    @ConfigProperty(name = "image.download.range.min-size", defaultValue = "8388608")
+    long minSize;
+
+    @ConfigProperty(name = "image.download.range.chunk-size", defaultValue = "2097152")
+    int chunkSize;
+
+    @ConfigProperty(name = "image.download.range.parallelism", defaultValue = "4")
+    int parallelism;
+
+    // Attempts per chunk within one download, on top of the first
+    @ConfigProperty(name = "image.download.range.chunk-retries", defaultValue = "2")
+    int chunkRetries;
+
+    @ConfigProperty(name = "image.download.range.timeout", defaultValue = "PT5M")
+    Duration timeout;
+
+    // Partial downloads; defaults to potd-downloads in the system temp directory
+    @ConfigProperty(name = "image.download.range.dir")
+    Optional<String> dir;
+
+    // Partial downloads nobody resumed within this period are deleted at startup
+    @ConfigProperty(name = "image.download.range.keep", defaultValue = "P1D")
+    Duration keep;
+
+    @Inject
+    MeterRegistry registry;
+
+    private HttpClient client;
+    private Path directory;
+    private Timer chunkOk;
+    private Timer chunkFailed;
+    private Counter chunkRetried;
+    private Counter chunkResumed;
+    private DistributionSummary chunkThroughput;
+    private ExecutorService chunkPool;
+
+    // Downloads by file key, so those of the same URL do not share the partial file at once
+    private final ConcurrentHashMap<String, KeyLock> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        // HTTP/1.1 so every chunk gets its own connection instead of sharing one HTTP/2 stream window
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        AtomicInteger threads = new AtomicInteger();
+        chunkPool = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "range-download-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        directory = Path.of(dir.orElse(System.getProperty("java.io.tmpdir") + "/potd-downloads"));
+        chunkOk = chunkTimer("ok");
+        chunkFailed = chunkTimer("failed");
+        chunkRetried = registry.counter("image.download.chunk.retries");
+        chunkResumed = registry.counter("image.download.chunk.resumed");
+        chunkThroughput = DistributionSummary.builder("image.download.chunk.throughput")
+                .description("Transfer rate of one range chunk")
+                .baseUnit("bytes_per_second")
+                .register(registry);
+        try {
+            Files.createDirectories(directory);
+            deleteStale();
+        } catch (IOException e) {
+            Log.warnf(e, "Could not prepare download directory %s", directory);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        chunkPool.shutdownNow();
+    }
+
+    private Timer chunkTimer(String result) {
+        return Timer.builder("image.download.chunk")
+                .description("Time to fetch one range chunk of a large download")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private void deleteStale() throws IOException {
+        FileTime cutoff = FileTime.from(Instant.now().minus(keep));
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                if (Files.getLastModifiedTime(file).compareTo(cutoff) < 0) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Result of the HEAD request. {@code length} is -1 when the server did not say.
+     */
+    record Probe(long length, boolean ranges, String validator, String sha1base36) {
+    }
+
+    /**
+     * Downloads {@code url} in parallel ranges, or returns {@code null} when the server does not
+     * support ranges or the file is too small to benefit, leaving it to the caller's plain GET.
+     *
+     * @throws IOException when a chunk keeps failing (the completed ones are kept for the next
+     *                     attempt), the file changed on the server or the checksum does not match
+     */
+    @WithSpan("RangeDownloader.download")
+    public byte[] download(String url) throws IOException {
+        Probe probe = probe(url);
+        if (probe == null || !probe.ranges() || probe.length() < Math.max(minSize, 1)) {
+            return null;
+        }
+        String key = key(url);
+        KeyLock lock = lock(key);
+        try {
+            return download(url, probe, key);
+        } finally {
+            unlock(key, lock);
+        }
+    }
+
+    private byte[] download(String url, Probe probe, String key) throws IOException {
+        Path part = directory.resolve(key + ".part");
+        Path statePath = directory.resolve(key + ".state");
+        int chunks = (int) ((probe.length() + chunkSize - 1) / chunkSize);
+        State state = State.load(statePath, probe, chunkSize);
+        if (state == null || !Files.exists(part)) {
+            state = new State(probe.validator(), probe.length(), chunkSize, new BitSet(chunks));
+        } else if (!state.done.isEmpty()) {
+            Log.infof("Resuming download of %s: %d of %d chunks already present", url, state.done.cardinality(), chunks);
+            chunkResumed.increment(state.done.cardinality());
+        }
+
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() != probe.length()) {
+                // Preallocate so chunks can be written at their offsets in any order
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap(new byte[1]), probe.length() - 1);
+            }
+            fetchMissing(url, probe, state, statePath, channel, chunks);
+        } catch (FileChangedException e) {
+            discard(part, statePath);
+            throw e;
+        }
+
+        if (probe.sha1base36() != null && !matchesSha1(part, probe.sha1base36())) {
+            discard(part, statePath);
+            registry.counter("image.download.range", Tags.of("result", "checksum-mismatch")).increment();
+            throw new IOException("Checksum mismatch for " + url);
+        }
+        byte[] bytes = Files.readAllBytes(part);
+        discard(part, statePath);
+        registry.counter("image.download.range", Tags.of("result", probe.sha1base36() != null ? "verified" : "unverified")).increment();
+        Log.infof("Downloaded %d bytes from %s in %d ranges", bytes.length, url, chunks);
+        return bytes;
+    }
+
+    Probe probe(String url) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .header("User-Agent", userAgent)
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            var headers = response.headers();
+            long length = headers.firstValueAsLong("Content-Length").orElse(-1);
+            boolean ranges = headers.firstValue("Accept-Ranges").map(v -> v.equalsIgnoreCase("bytes")).orElse(false);
+            // Weak ETags cannot be used with If-Range
+            String validator = headers.firstValue("ETag").filter(etag -> !etag.startsWith("W/"))
+                    .or(() -> headers.firstValue("Last-Modified"))
+                    .orElse(null);
+            return new Probe(length, ranges, validator, headers.firstValue(SHA1_HEADER).orElse(null));
+        } catch (IOException e) {
+            Log.debugf("HEAD %s failed: %s", url, e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the chunks not yet in {@code state}, {@code parallelism} at a time. Every lane runs
+     * until the queue is empty or some chunk has failed for good; in-flight chunks always finish,
+     * so everything that was transferred is recorded for the next attempt.
+     */
+    private void fetchMissing(String url, Probe probe, State state, Path statePath, FileChannel channel, int chunks) throws IOException {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = state.done.nextClearBit(0); i < chunks; i = state.done.nextClearBit(i + 1)) {
+            missing.add(i);
+        }
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Uni<Void>> lanes = new ArrayList<>();
+        for (int lane = 0; lane < Math.min(parallelism, missing.size()); lane++) {
+            lanes.add(Uni.createFrom().<Void>item(() -> {
+                int i;
+                while (!failed.get() && (i = next.getAndIncrement()) < missing.size()) {
+                    int chunk = missing.get(i);
+                    try {
+                        fetchChunk(url, probe, chunk, channel);
+                        state.markDone(chunk, statePath);
+                    } catch (IOException e) {
+                        failed.set(true);
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return null;
+            }).runSubscriptionOn(chunkPool));
+        }
+        if (lanes.isEmpty()) {
+            return;
+        }
+        try {
+            Uni.join().all(lanes).andCollectFailures().await().atMost(timeout);
+        } catch (RuntimeException e) {
+            failed.set(true);
+            List<Throwable> causes = e instanceof CompositeException composite ? composite.getCauses() : List.of(e);
+            for (Throwable cause : causes) {
+                if (cause instanceof UncheckedIOException unchecked && unchecked.getCause() instanceof FileChangedException changed) {
+                    throw changed;
+                }
+            }
+            throw new IOException("Download of " + url + " incomplete (" + state.done.cardinality() + " of " + chunks + " chunks)", e);
+        }
+    }
+
+    private void fetchChunk(String url, Probe probe, int chunk, FileChannel channel) throws IOException {
+        long start = (long) chunk * chunkSize;
+        long end = Math.min(probe.length(), start + chunkSize) - 1;
+        for (int attempt = 0; ; attempt++) {
+            long began = System.nanoTime();
+            try {
+                fetchRange(url, probe, start, end, channel);
+                long elapsed = System.nanoTime() - began;
+                chunkOk.record(elapsed, TimeUnit.NANOSECONDS);
+                chunkThroughput.record((end - start + 1) * 1e9 / Math.max(elapsed, 1));
+                return;
+            } catch (FileChangedException e) {
+                throw e;
+            } catch (IOException e) {
+                chunkFailed.record(System.nanoTime() - began, TimeUnit.NANOSECONDS);
+                if (attempt >= chunkRetries) {
+                    throw e;
+                }
+                chunkRetried.increment();
+                Log.debugf("Chunk %d of %s failed (%s), retrying", chunk, url, e.getMessage());
+            }
+        }
+    }
+
+    private void fetchRange(String url, Probe probe, long start, long end, FileChannel channel) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .header("User-Agent", userAgent)
+                .header("Range", "bytes=" + start + "-" + end)
+                .timeout(timeout);
+        if (probe.validator() != null) {
+            request.header("If-Range", probe.validator());
+        }
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        try (InputStream in = response.body()) {
+            if (response.statusCode() == 200) {
+                // If-Range did not match: the whole (new) file is coming back
+                throw new FileChangedException(url);
+            }
+            if (response.statusCode() != 206) {
+                throw new IOException("Server returned HTTP response code: " + response.statusCode() + " for range " + start + "-" + end);
+            }
+            Matcher range = CONTENT_RANGE.matcher(response.headers().firstValue("Content-Range").orElse(""));
+            if (!range.matches() || Long.parseLong(range.group(1)) != start || Long.parseLong(range.group(2)) != end) {
+                throw new IOException("Unexpected Content-Range for " + start + "-" + end + ": " + response.headers().firstValue("Content-Range").orElse(null));
+            }
+            byte[] buffer = new byte[64 * 1024];
+            long position = start;
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                if (position + n > end + 1) {
+                    throw new IOException("Range " + start + "-" + end + " returned too many bytes");
+                }
+                ByteBuffer src = ByteBuffer.wrap(buffer, 0, n);
+                while (src.hasRemaining()) {
+                    position += channel.write(src, position);
+                }
+            }
+            if (position != end + 1) {
+                throw new IOException("Range " + start + "-" + end + " ended after " + (position - start) + " bytes");
+            }
+        }
+    }
+
+    static boolean matchesSha1(Path file, String sha1base36) throws IOException {
+        MessageDigest sha1;
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                sha1.update(buffer, 0, n);
+            }
+        }
+        try {
+            return new BigInteger(sha1base36.trim(), 36).equals(new BigInteger(1, sha1.digest()));
+        } catch (NumberFormatException e) {
+            Log.warnf("Ignoring malformed %s header: %s", SHA1_HEADER, sha1base36);
+            return true;
+        }
+    }
+
+    private static String key(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Lock of one file key, removed from {@link #inFlight} once nobody uses it.
+     */
+    private static final class KeyLock {
+        final ReentrantLock lock = new ReentrantLock();
+        // Only changed within the map's atomic compute for the key
+        int users;
+    }
+
+    private KeyLock lock(String key) {
+        KeyLock keyLock = inFlight.compute(key, (k, existing) -> {
+            KeyLock used = existing != null ? existing : new KeyLock();
+            used.users++;
+            return used;
+        });
+        if (!keyLock.lock.tryLock()) {
+            Log.debugf("Waiting for another download of file %s", key);
+            keyLock.lock.lock();
+        }
+        return keyLock;
+    }
+
+    private void unlock(String key, KeyLock keyLock) {
+        keyLock.lock.unlock();
+        inFlight.computeIfPresent(key, (k, used) -> --used.users == 0 ? null : used);
+    }
+
+    private static void discard(Path part, Path state) throws IOException {
+        Files.deleteIfExists(part);
+        Files.deleteIfExists(state);
+    }
+
+    /**
+     * Completed chunks of one partial download, persisted as
+     * {@code validator \n length \n chunkSize \n hex(bitset)}.
+     */
+    static final class State {
+        final String validator;
+        final long length;
+        final int chunkSize;
+        final BitSet done;
+
+        State(String validator, long length, int chunkSize, BitSet done) {
+            this.validator = validator;
+            this.length = length;
+            this.chunkSize = chunkSize;
+            this.done = done;
+        }
+
+        /**
+         * Returns the saved state if it describes the same version of the file, otherwise {@code null}.
+         */
+        static State load(Path path, Probe probe, int chunkSize) {
+            try {
+                List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+                if (lines.size() != 4 || probe.validator() == null || !probe.validator().equals(lines.get(0))
+                        || Long.parseLong(lines.get(1)) != probe.length() || Integer.parseInt(lines.get(2)) != chunkSize) {
+                    return null;
+                }
+                return new State(lines.get(0), probe.length(), chunkSize, BitSet.valueOf(HexFormat.of().parseHex(lines.get(3))));
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        synchronized void markDone(int chunk, Path path) throws IOException {
+            done.set(chunk);
+            if (validator == null) {
+                // Without a validator a later attempt could not tell whether the file changed
+                return;
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(tmp, validator + "\n" + length + "\n" + chunkSize + "\n" + HexFormat.of().formatHex(done.toByteArray()), StandardCharsets.UTF_8);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * The server no longer serves the version the partial download started from.
+     */
+    static final class FileChangedException extends IOException {
+        FileChangedException(String url) {
+            super(url + " changed during the download");
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package dev.sf13.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.awt.Dimension;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gatekeeper in front of {@link ImageService} renders.
+ * <p>
+ * Every render reserves an estimate of the heap it will need from a fixed memory budget and
+ * one of a fixed number of render slots. If neither frees up within {@code max-wait} the render
+ * is rejected with a retryable {@link RenderRejectedException}, so bursts of large requests
+ * degrade into fast 503s instead of an OutOfMemoryError.
+ */
+@ApplicationScoped
+public class RenderAdmissionController {
+
+    private static final long MB = 1024 * 1024;
+
+    @ConfigProperty(name = "render.admission.max-input-pixels", defaultValue = "50000000")
+    long maxInputPixels;
+
+    @ConfigProperty(name = "render.admission.max-output-pixels", defaultValue = "16000000")
+    long maxOutputPixels;
+
+    @ConfigProperty(name = "render.admission.memory-budget-mb", defaultValue = "512")
+    int memoryBudgetMb;
+
+    @ConfigProperty(name = "render.admission.max-concurrent", defaultValue = "0")
+    int maxConcurrent;
+
+    @ConfigProperty(name = "render.admission.max-wait", defaultValue = "PT0.5S")
+    Duration maxWait;
+
+    @ConfigProperty(name = "render.admission.retry-after-seconds", defaultValue = "5")
+    long retryAfterSeconds;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Semaphore memory;
+    private Semaphore slots;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private Counter admitted;
+    private Counter rejectedSaturated;
+    private Counter rejectedTooLarge;
+
+    @PostConstruct
+    void init() {
+        memory = new Semaphore(Math.max(1, memoryBudgetMb), true);
+        int concurrency = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        slots = new Semaphore(concurrency, true);
+        Log.infof("Render admission: %d MB budget, %d concurrent renders, max output %d px", memoryBudgetMb, concurrency, maxOutputPixels);
+
+        Gauge.builder("render.admission.queue.depth", waiting, AtomicInteger::get)
+                .description("Renders waiting for admission")
+                .register(registry);
+        Gauge.builder("render.admission.active", active, AtomicInteger::get)
+                .description("Renders currently admitted")
+                .register(registry);
+        Gauge.builder("render.admission.memory.reserved", memory, s -> (double) (memoryBudgetMb - s.availablePermits()) * MB)
+                .description("Heap reserved by admitted renders")
+                .baseUnit("bytes")
+                .register(registry);
+        admitted = registry.counter("render.admission.admitted");
+        rejectedSaturated = registry.counter("render.admission.rejected", "reason", "saturated");
+        rejectedTooLarge = registry.counter("render.admission.rejected", "reason", "too_large");
+    }
+
+    /**
+     * Admits a render of a source with the given dimensions into a {@code width x height}
+     * output. Either dimension may be null, in which case it follows the source aspect ratio.
+     *
+     * @throws RenderRejectedException if the output is over budget or the budget is exhausted
+     */
+    public Permit admit(Dimension source, Integer width, Integer height) {
+        long outputWidth;
+        long outputHeight;
+        if (width != null && height != null) {
+            outputWidth = width;
+            outputHeight = height;
+        } else if (width != null) {
+            outputWidth = width;
+            outputHeight = (long) ((double) width / source.width * source.height);
+        } else if (height != null) {
+            outputHeight = height;
+            outputWidth = (long) ((double) height / source.height * source.width);
+        } else {
+            outputWidth = source.width;
+            outputHeight = source.height;
+        }
+        return admit((long) source.width * source.height, outputWidth, outputHeight);
+    }
+
+    public Permit admit(long sourcePixels, long outputWidth, long outputHeight) {
+        return admit(sourcePixels, outputWidth, outputHeight, 0);
+    }
+
+    /**
+     * Like {@link #admit(long, long, long)}, additionally reserving {@code encodedBytes} for
+     * compressed input the render reads (and a decoder may buffer) on top of the pixel estimate.
+     */
+    public Permit admit(long sourcePixels, long outputWidth, long outputHeight, long encodedBytes) {
+        if (outputWidth <= 0 || outputHeight <= 0) {
+            rejectedTooLarge.increment();
+            throw RenderRejectedException.tooLarge("Output dimensions must be positive");
+        }
+        long outputPixels = outputWidth * outputHeight;
+        if (outputPixels > maxOutputPixels) {
+            rejectedTooLarge.increment();
+            throw RenderRejectedException.tooLarge(String.format(
+                    "Requested %dx%d output exceeds the limit of %d pixels", outputWidth, outputHeight, maxOutputPixels));
+        }
+        int permits = (int) Math.min(memoryBudgetMb, Math.max(1, (estimateBytes(sourcePixels, outputPixels) + encodedBytes + MB - 1) / MB));
+
+        waiting.incrementAndGet();
+        try {
+            long deadline = System.nanoTime() + maxWait.toNanos();
+            if (!slots.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw saturated();
+            }
+            if (!memory.tryAcquire(permits, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                slots.release();
+                throw saturated();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw saturated();
+        } finally {
+            waiting.decrementAndGet();
+        }
+        active.incrementAndGet();
+        admitted.increment();
+        return new Permit(permits);
+    }
+
+    /**
+     * Rough peak heap of a render: the decoded source (capped by decode subsampling) as
+     * 4-byte pixels, plus the output raster, the float error buffer of the ditherer and the
+     * encoder's working copy.
+     */
+    long estimateBytes(long sourcePixels, long outputPixels) {
+        long decodedPixels = Math.min(sourcePixels, maxInputPixels);
+        return decodedPixels * 4 + outputPixels * 12;
+    }
+
+    private RenderRejectedException saturated() {
+        rejectedSaturated.increment();
+        return RenderRejectedException.saturated(retryAfterSeconds);
+    }
+
+    public final class Permit implements AutoCloseable {
+        private final int memoryPermits;
+        private boolean released;
+
+        private Permit(int memoryPermits) {
+            this.memoryPermits = memoryPermits;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                active.decrementAndGet();
+                memory.release(memoryPermits);
+                slots.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package dev.sf13.service;
+
+/**
+ * Thrown by {@link RenderAdmissionController} when a render is refused, either because it is
+ * too large to ever be served ({@code retryable == false}) or because the render budget is
+ * currently exhausted.
+ */
+public class RenderRejectedException extends RuntimeException {
+
+    private final boolean retryable;
+    private final long retryAfterSeconds;
+
+    private RenderRejectedException(String message, boolean retryable, long retryAfterSeconds) {
+        super(message);
+        this.retryable = retryable;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public static RenderRejectedException tooLarge(String message) {
+        return new RenderRejectedException(message, false, 0);
+    }
+
+    public static RenderRejectedException saturated(long retryAfterSeconds) {
+        return new RenderRejectedException("Render capacity exhausted, retry later", true, retryAfterSeconds);
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
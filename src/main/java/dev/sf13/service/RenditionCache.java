@@ -0,0 +1,196 @@
+package dev.sf13.service;
+
+import dev.sf13.dto.PictureOfTheDayDTO;
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.cache.CacheResult;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.function.Function;
+
+/**
+ * The per-date payloads of the picture endpoints (JSON and renditions), cached by date, output
+ * parameters and source. Used by the REST resource to serve them and by {@link CacheCoherence}
+ * to render them again after a picture changed.
+ * <p>
+ * Every cache key holds the date as a {@code yyyy-MM-dd} string, which is what
+ * {@link CacheCoherence#evict} matches on. A null item means there is no such picture.
+ * Rendering runs on a worker thread; pictures are looked up in short transactions of their
+ * own, so no transaction spans the render.
+ */
+@ApplicationScoped
+public class RenditionCache {
+
+    /**
+     * An encoded image, its content type and its strong {@code ETag}: the quoted SHA-256 of
+     * the bytes, computed once when the image is rendered and cached, so equal bytes on every
+     * node and in every cache generation give equal tags.
+     */
+    public record Rendered(byte[] data, String contentType, String etag) {
+
+        public Rendered(byte[] data, String contentType) {
+            this(data, contentType, "\"" + ImageService.contentHash(data) + "\"");
+        }
+    }
+
+    @Inject
+    ImageService imageService;
+
+    @Inject
+    ImagePipelineMetrics pipelineMetrics;
+
+    @Inject
+    RenderAdmissionController admission;
+
+    @Inject
+    DeviceProfileRegistry deviceProfiles;
+
+    @Inject
+    DeviceRenditionService deviceRenditions;
+
+    private ImagePipelineMetrics.Pipeline scaledPipeline;
+    // Indexed by bit depth (1, 2 or 4)
+    private final ImagePipelineMetrics.Pipeline[] ditheredPipelines = new ImagePipelineMetrics.Pipeline[5];
+
+    @PostConstruct
+    void init() {
+        scaledPipeline = pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_IMAGE, "scaled");
+        for (int bits : new int[]{1, 2, 4}) {
+            ditheredPipelines[bits] = pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_DITHERED, "scaled-" + bits + "bit");
+        }
+    }
+
+    @CacheResult(cacheName = "potd-date")
+    public Uni<PictureOfTheDayDTO> describe(String date, String source) {
+        return withPicture(source, date, potd -> new PictureOfTheDayDTO(
+                potd.source,
+                potd.date,
+                potd.description,
+                potd.shortDescription,
+                potd.credit,
+                PictureOfTheDay.withSource("/api/potd/" + date + "/image", source),
+                PictureOfTheDay.withSource("/api/potd/" + date + "/image/dithered", source),
+                PictureOfTheDay.withSource("/api/potd/today/trmnl", source)));
+    }
+
+    @CacheResult(cacheName = "potd-image-scaled-w")
+    public Uni<Rendered> scaled(String date, Integer width, String source) {
+        return renderScaled(source, date, width, null);
+    }
+
+    @CacheResult(cacheName = "potd-image-scaled-wh")
+    public Uni<Rendered> scaled(String date, Integer width, Integer height, String source) {
+        return renderScaled(source, date, width, height);
+    }
+
+    @CacheResult(cacheName = "potd-image-dithered")
+    public Uni<Rendered> dithered(String date, int bits, RenditionFormat format, String source) {
+        return renderDithered(source, date, null, null, bits, format);
+    }
+
+    @CacheResult(cacheName = "potd-image-dithered-scaled-w")
+    public Uni<Rendered> dithered(String date, Integer width, int bits, RenditionFormat format, String source) {
+        return renderDithered(source, date, width, null, bits, format);
+    }
+
+    @CacheResult(cacheName = "potd-image-dithered-scaled-wh")
+    public Uni<Rendered> dithered(String date, Integer width, Integer height, int bits, RenditionFormat format, String source) {
+        return renderDithered(source, date, width, height, bits, format);
+    }
+
+    /**
+     * The TRMNL rendition at the given depth and format. The registered "trmnl" profile is
+     * pre-rendered at ingest; other depths/formats are rendered on demand.
+     */
+    @CacheResult(cacheName = "potd-trmnl-date")
+    public Uni<Rendered> trmnl(String date, int bits, RenditionFormat format, String source) {
+        return renderForDevice(source, date, deviceProfiles.trmnl().withOutput(bits, format));
+    }
+
+    /**
+     * The rendition of a registered device profile.
+     *
+     * @throws IllegalArgumentException for unknown profiles
+     */
+    @CacheResult(cacheName = "potd-device")
+    public Uni<Rendered> device(String date, String profileName, String source) {
+        DeviceProfile profile = deviceProfiles.find(profileName)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown device profile: " + profileName));
+        return renderForDevice(source, date, profile);
+    }
+
+    private Uni<Rendered> renderScaled(String source, String date, Integer width, Integer height) {
+        return withPicture(source, date, potd -> {
+            if (potd.originalImage == null) {
+                return null;
+            }
+            byte[] renderSource = potd.renderSource();
+            try (RenderAdmissionController.Permit permit = admission.admit(imageService.readDimensions(renderSource), width, height)) {
+                return new Rendered(imageService.scaleImage(renderSource, width, height, scaledPipeline), RenditionFormat.PNG.contentType());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error scaling image of " + date, e);
+            }
+        });
+    }
+
+    private Uni<Rendered> renderDithered(String source, String date, Integer width, Integer height, int bits, RenditionFormat format) {
+        // The stored 1-bit PNG covers the default case; other depths and raw output are rendered from the working master
+        boolean useStored = bits == 1 && format == RenditionFormat.PNG;
+        return withPicture(source, date, potd -> {
+            byte[] image = useStored ? potd.ditheredImage : potd.renderSource();
+            if (image == null) {
+                return null;
+            }
+            if (useStored && width == null && height == null) {
+                return new Rendered(image, format.contentType());
+            }
+            ImagePipelineMetrics.Pipeline pipeline = ditheredPipelines[bits];
+            try (RenderAdmissionController.Permit permit = admission.admit(imageService.readDimensions(image), width, height)) {
+                byte[] data = imageService.scaleImage(image, width, height, pipeline);
+                if (!useStored) {
+                    data = imageService.ditherImage(data, bits, format, pipeline);
+                }
+                return new Rendered(data, format.contentType());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error dithering image of " + date, e);
+            }
+        });
+    }
+
+    private Uni<Rendered> renderForDevice(String source, String date, DeviceProfile profile) {
+        return withPicture(source, date, potd -> {
+            if (potd.originalImage == null) {
+                Log.warnf("%s image generation failed. Image data missing for date: %s", profile.name(), date);
+                return null;
+            }
+            try {
+                DeviceRenditionService.Rendition rendition = deviceRenditions.getOrRender(potd, profile);
+                Log.infof("%s image served for date: %s", profile.name(), date);
+                return new Rendered(rendition.data(), rendition.contentType());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error generating " + profile.name() + " image of " + date, e);
+            }
+        });
+    }
+
+    // Applies render to the picture on a worker thread; emits null if there is none
+    private <T> Uni<T> withPicture(String source, String date, Function<PictureOfTheDay, T> render) {
+        LocalDate day = LocalDate.parse(date);
+        return Uni.createFrom().item(() -> {
+            PictureOfTheDay potd = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate(source, day));
+            if (potd == null) {
+                Log.warnf("POTD not found for date: %s", date);
+                return null;
+            }
+            return render.apply(potd);
+        }).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+}
@@ -0,0 +1,32 @@
+package dev.sf13.service;
+
+import java.util.Locale;
+
+/**
+ * Wire format of a rendered image.
+ */
+public enum RenditionFormat {
+    /** PNG, at the native bit depth of the rendition. */
+    PNG("image/png"),
+    /** Packed framebuffer bytes, see {@link GrayscaleDitherer#packedPixels}. */
+    RAW("application/octet-stream");
+
+    private final String contentType;
+
+    RenditionFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    /**
+     * Parses a query/config value such as {@code png} or {@code raw}.
+     *
+     * @throws IllegalArgumentException for unknown formats
+     */
+    public static RenditionFormat parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
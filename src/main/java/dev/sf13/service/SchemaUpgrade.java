@@ -0,0 +1,58 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+import java.util.List;
+
+/**
+ * Removes schema left over from earlier versions that Hibernate's schema update keeps.
+ * <p>
+ * Databases created before pictures had a source carry a unique constraint on
+ * {@code picture_of_the_day.date} alone, which lets only one source store a picture per day.
+ * It is looked up in {@code information_schema} (its generated name differs per database) and
+ * dropped at startup, before the first scrape. Dropping is idempotent, so concurrently starting
+ * replicas do not get in each other's way.
+ */
+@ApplicationScoped
+public class SchemaUpgrade {
+
+    void onStart(@Observes StartupEvent event) {
+        try {
+            dropLegacyDateConstraint();
+        } catch (RuntimeException e) {
+            // Only other sources than the default one are affected: their rows fail to insert
+            Log.errorf(e, "Could not drop the legacy unique constraint on picture_of_the_day.date");
+        }
+    }
+
+    void dropLegacyDateConstraint() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            @SuppressWarnings("unchecked")
+            List<Object[]> constraints = PictureOfTheDay.getEntityManager().createNativeQuery(
+                            "select tc.table_schema, tc.table_name, tc.constraint_name"
+                                    + " from information_schema.table_constraints tc"
+                                    + " join information_schema.key_column_usage kcu"
+                                    + " on kcu.constraint_schema = tc.constraint_schema and kcu.constraint_name = tc.constraint_name"
+                                    + " where lower(tc.table_name) = 'picture_of_the_day' and tc.constraint_type = 'UNIQUE'"
+                                    + " group by tc.table_schema, tc.table_name, tc.constraint_name"
+                                    + " having count(*) = 1 and max(lower(kcu.column_name)) = 'date'")
+                    .getResultList();
+            for (Object[] constraint : constraints) {
+                Log.infof("Dropping legacy unique constraint %s on picture_of_the_day.date", constraint[2]);
+                PictureOfTheDay.getEntityManager().createNativeQuery("alter table " + quote(constraint[0]) + "." + quote(constraint[1])
+                                + " drop constraint if exists " + quote(constraint[2]))
+                        .executeUpdate();
+            }
+        });
+    }
+
+    // Names come from the catalog as stored, so quoting keeps their case on every database
+    private static String quote(Object name) {
+        return "\"" + name.toString().replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,33 @@
+package dev.sf13.service;
+
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Runs the hourly scrape on exactly one replica: whichever holds the {@value #LEASE} lease.
+ * <p>
+ * The lease is kept after the run. Its TTL ({@code scheduler.lease.ttl}) is shorter than the
+ * schedule interval, so it has expired by the next run and a crashed leader is replaced then.
+ */
+@ApplicationScoped
+public class ScrapeScheduler {
+
+    static final String LEASE = "wikipedia-scrape";
+
+    @Inject
+    LeaderLease lease;
+
+    @Inject
+    WikipediaScraper scraper;
+
+    @Scheduled(cron = "{scraper.cron}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledScrape() {
+        if (!lease.tryAcquire(LEASE)) {
+            Log.debugf("Skipping scheduled scrape: lease %s is held by another replica", LEASE);
+            return;
+        }
+        scraper.scrape();
+    }
+}
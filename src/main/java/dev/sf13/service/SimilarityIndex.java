@@ -0,0 +1,61 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.PictureOfTheDay;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds pictures whose perceptual hash is within a Hamming distance of a given hash.
+ * <p>
+ * Up to distance 3, candidates come from exact matches on any of the four indexed 16-bit hash
+ * bands, so the lookup is four index probes regardless of archive size; by the pigeonhole
+ * principle every match shares a band with the hash. Larger distances have no such guarantee
+ * and compare against every stored hash instead.
+ */
+@ApplicationScoped
+public class SimilarityIndex {
+
+    public record Match(long id, String source, LocalDate date, String shortDescription, String credit, int distance) {
+    }
+
+    // Largest distance the band lookup finds every match for: 4 bands, so one of them is unchanged
+    static final int BAND_LOOKUP_MAX_DISTANCE = 3;
+
+    @ConfigProperty(name = "image.phash.max-distance", defaultValue = "3")
+    int defaultMaxDistance;
+
+    public int defaultMaxDistance() {
+        return defaultMaxDistance;
+    }
+
+    /**
+     * Matches within {@code maxDistance}, closest first. Must be called inside a transaction.
+     */
+    public List<Match> findSimilar(long hash, int maxDistance, int limit) {
+        String select = "select id, source, date, shortDescription, credit, perceptualHash from PictureOfTheDay";
+        List<Object[]> rows = maxDistance <= BAND_LOOKUP_MAX_DISTANCE
+                ? PictureOfTheDay.getEntityManager().createQuery(
+                                select + " where phashBand0 = ?1 or phashBand1 = ?2 or phashBand2 = ?3 or phashBand3 = ?4", Object[].class)
+                        .setParameter(1, PictureOfTheDay.band(hash, 0))
+                        .setParameter(2, PictureOfTheDay.band(hash, 1))
+                        .setParameter(3, PictureOfTheDay.band(hash, 2))
+                        .setParameter(4, PictureOfTheDay.band(hash, 3))
+                        .getResultList()
+                : PictureOfTheDay.getEntityManager().createQuery(select + " where perceptualHash is not null", Object[].class)
+                        .getResultList();
+        List<Match> matches = new ArrayList<>();
+        for (Object[] row : rows) {
+            int distance = Long.bitCount(hash ^ (Long) row[5]);
+            if (distance <= maxDistance) {
+                matches.add(new Match((Long) row[0], (String) row[1], (LocalDate) row[2], (String) row[3], (String) row[4], distance));
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::distance).thenComparing(Match::date, Comparator.reverseOrder()));
+        return matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+}
@@ -0,0 +1,83 @@
+package dev.sf13.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of encoded pyramid tiles, bounded by the total size of the cached bytes rather
+ * than by entry count, since tile sizes vary by an order of magnitude between flat and busy areas.
+ */
+@ApplicationScoped
+public class TileCache {
+
+    @ConfigProperty(name = "tiles.cache.max-bytes", defaultValue = "67108864")
+    long maxBytes;
+
+    @Inject
+    MeterRegistry registry;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+
+    @PostConstruct
+    void init() {
+        hits = registry.counter("tiles.cache.requests", "result", "hit");
+        misses = registry.counter("tiles.cache.requests", "result", "miss");
+        evictions = registry.counter("tiles.cache.evictions");
+        Gauge.builder("tiles.cache.size", this, TileCache::size)
+                .description("Encoded bytes held by the tile cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public synchronized byte[] get(String key) {
+        byte[] tile = entries.get(key);
+        (tile != null ? hits : misses).increment();
+        return tile;
+    }
+
+    public synchronized void put(String key, byte[] tile) {
+        if (tile.length > maxBytes) {
+            return;
+        }
+        byte[] previous = entries.put(key, tile);
+        bytes += tile.length - (previous == null ? 0 : previous.length);
+        Iterator<Map.Entry<String, byte[]>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().length;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drops all tiles of the picture of the given date.
+     */
+    public synchronized void invalidate(String date) {
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, byte[]> entry = it.next();
+            if (entry.getKey().startsWith(date + "/")) {
+                bytes -= entry.getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    synchronized long size() {
+        return bytes;
+    }
+}
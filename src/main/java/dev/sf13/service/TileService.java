@@ -0,0 +1,188 @@
+package dev.sf13.service;
+
+import dev.sf13.dto.TilePyramidDTO;
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.cache.CacheResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Region crops and deep-zoom tiles of the stored source image, the largest copy of a picture
+ * kept: the full original in archival mode, otherwise the {@code image.source.max-width} px
+ * Wikimedia rendition (see {@link PictureOfTheDay#sourceUrl}).
+ * <p>
+ * Both decode only the requested window of the source ({@link ImageService#renderRegion}), so
+ * zooming into a 100 MP panorama never materialises the whole image. Tiles are immutable for a
+ * given picture and are kept in the byte-bounded {@link TileCache}.
+ * <p>
+ * The window is decoded straight from the blob stream ({@link OriginalImageStore#read}), and the
+ * original's row and dimensions are cached per picture, so a tile miss neither loads the whole
+ * original into the heap nor parses its header again.
+ */
+@ApplicationScoped
+public class TileService {
+
+    @ConfigProperty(name = "tiles.size", defaultValue = "256")
+    int tileSize;
+
+    @Inject
+    ImageService imageService;
+
+    @Inject
+    OriginalImageStore store;
+
+    @Inject
+    RenderAdmissionController admission;
+
+    @Inject
+    TileCache tileCache;
+
+    @Inject
+    ImagePipelineMetrics pipelineMetrics;
+
+    private ImagePipelineMetrics.Pipeline regionPipeline;
+    private ImagePipelineMetrics.Pipeline tilePipeline;
+
+    @PostConstruct
+    void init() {
+        regionPipeline = pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_REGION, "region");
+        tilePipeline = pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_REGION, "tile");
+    }
+
+    /**
+     * Stored original of a picture and its dimensions.
+     */
+    record Original(OriginalImageStore.Stored stored, Dimension size) {
+    }
+
+    /**
+     * Describes the pyramid of the picture, or returns null if there is none for the date.
+     */
+    public TilePyramidDTO describe(String source, LocalDate date) throws IOException {
+        Original original = original(date.toString(), source);
+        if (original == null) {
+            return null;
+        }
+        Dimension size = original.size();
+        return new TilePyramidDTO(size.width, size.height, tileSize, maxLevel(size),
+                PictureOfTheDay.withSource("/api/potd/" + date + "/tiles/{z}/{x}/{y}", source));
+    }
+
+    /**
+     * Renders the {@code x, y, w, h} window of the original (source pixels, clipped to the
+     * image) scaled by {@code scale}, or returns null if there is no picture for the date.
+     *
+     * @throws IllegalArgumentException if the window lies outside the image
+     */
+    public byte[] region(String source, LocalDate date, int x, int y, int w, int h, double scale) throws IOException {
+        Original original = original(date.toString(), source);
+        if (original == null) {
+            return null;
+        }
+        Dimension size = original.size();
+        Rectangle region = new Rectangle(x, y, w, h).intersection(new Rectangle(size));
+        if (region.isEmpty()) {
+            throw new IllegalArgumentException("Region lies outside the " + size.width + "x" + size.height + " image");
+        }
+        int width = Math.max(1, (int) Math.round(region.width * scale));
+        int height = Math.max(1, (int) Math.round(region.height * scale));
+        try (RenderAdmissionController.Permit permit = admission.admit(decodedPixels(region, width, height), width, height)) {
+            return render(original, region, width, height, regionPipeline);
+        }
+    }
+
+    /**
+     * Returns tile {@code (x, y)} of level {@code z}, or null if the picture or the tile does
+     * not exist.
+     */
+    public byte[] tile(String source, LocalDate date, int z, int x, int y) throws IOException {
+        // Date first, so TileCache#invalidate(date) drops the tiles of every source
+        String key = date + "/" + source + "/" + z + "/" + x + "/" + y;
+        byte[] cached = tileCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Original original = original(date.toString(), source);
+        if (original == null) {
+            return null;
+        }
+        Dimension size = original.size();
+        int maxLevel = maxLevel(size);
+        if (z < 0 || z > maxLevel || x < 0 || y < 0) {
+            return null;
+        }
+        // Source pixels per output pixel at this level
+        long step = 1L << (maxLevel - z);
+        long span = tileSize * step;
+        long left = x * span;
+        long top = y * span;
+        if (left >= size.width || top >= size.height) {
+            return null;
+        }
+        Rectangle region = new Rectangle((int) left, (int) top,
+                (int) Math.min(span, size.width - left), (int) Math.min(span, size.height - top));
+        int width = (int) Math.max(1, (region.width + step - 1) / step);
+        int height = (int) Math.max(1, (region.height + step - 1) / step);
+
+        byte[] tile;
+        try (RenderAdmissionController.Permit permit = admission.admit(decodedPixels(region, width, height), width, height)) {
+            tile = render(original, region, width, height, tilePipeline);
+        }
+        tileCache.put(key, tile);
+        return tile;
+    }
+
+    /**
+     * Strong {@code ETag} of a region or tile of the picture, or null if there is none: renders
+     * are deterministic, so the stored image's content hash plus the tile size and the
+     * {@code rendition} parameters identify the bytes without hashing them on every request.
+     */
+    public String etag(String source, LocalDate date, String rendition) throws IOException {
+        Original original = original(date.toString(), source);
+        if (original == null) {
+            return null;
+        }
+        OriginalImageStore.Stored stored = original.stored();
+        String image = stored.contentHash() != null ? stored.contentHash() : stored.id() + "-" + stored.length();
+        return "\"" + image + "-" + tileSize + "-" + rendition + "\"";
+    }
+
+    /**
+     * Level of the full-resolution image: the smallest level at which the long edge fits
+     * in {@code 2^level} pixels.
+     */
+    static int maxLevel(Dimension size) {
+        int longEdge = Math.max(size.width, size.height);
+        return longEdge <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(longEdge - 1);
+    }
+
+    // Subsampled region decodes stay below twice the output size on each axis
+    private static long decodedPixels(Rectangle region, int width, int height) {
+        return Math.min((long) region.width * region.height, 4L * width * height);
+    }
+
+    /**
+     * Looks up the original of a picture and reads its dimensions from the header, or returns
+     * null if there is none. Keyed by the date string like the other image caches, so
+     * {@link CacheCoherence} evicts it when the picture changes.
+     */
+    @CacheResult(cacheName = "potd-tile-original")
+    Original original(String date, String source) throws IOException {
+        OriginalImageStore.Stored stored = store.describe(source, LocalDate.parse(date));
+        if (stored == null) {
+            return null;
+        }
+        return new Original(stored, store.read(stored, imageService::readDimensions));
+    }
+
+    private byte[] render(Original original, Rectangle region, int width, int height, ImagePipelineMetrics.Pipeline pipeline) throws IOException {
+        return store.read(original.stored(), in -> imageService.renderRegion(in, original.stored().length(), region, width, height, pipeline));
+    }
+}
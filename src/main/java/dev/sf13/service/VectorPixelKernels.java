@@ -0,0 +1,47 @@
+package dev.sf13.service;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link PixelKernels} on the Vector API: luma conversion processes {@code SPECIES.length()}
+ * pixels per step (8 with AVX2, 16 with AVX-512) and the remainder one pixel at a time. Only
+ * compiled with {@code -PvectorKernels=true} and loaded by {@link PixelKernels#best()} when the
+ * incubator module is present.
+ */
+final class VectorPixelKernels extends PixelKernels {
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    // Same lane count as INTS, so int lanes convert to float lanes one to one
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    String name() {
+        return "vector-" + FLOATS.length() + "x32";
+    }
+
+    @Override
+    void luma(int[] rgb, float[] dst, int offset, int length) {
+        int bound = INTS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += INTS.length()) {
+            IntVector pixel = IntVector.fromArray(INTS, rgb, i);
+            FloatVector r = (FloatVector) pixel.lanewise(VectorOperators.LSHR, 16).and(0xFF).convert(VectorOperators.I2F, 0);
+            FloatVector g = (FloatVector) pixel.lanewise(VectorOperators.LSHR, 8).and(0xFF).convert(VectorOperators.I2F, 0);
+            FloatVector b = (FloatVector) pixel.and(0xFF).convert(VectorOperators.I2F, 0);
+            r.mul(0.299f).add(g.mul(0.587f)).add(b.mul(0.114f)).intoArray(dst, offset + i);
+        }
+        for (; i < length; i++) {
+            dst[offset + i] = luma(rgb[i]);
+        }
+    }
+
+    // A Vector API version measured 1.4-2x slower than the scalar loop on JDK 17
+    // (PixelKernelsBenchmark.quantize), so quantization stays scalar
+    @Override
+    void quantize(float[] values, int offset, float[] thresholds, int[] indices, int length, float step, int maxIndex) {
+        scalar().quantize(values, offset, thresholds, indices, length, step, maxIndex);
+    }
+}
@@ -6,26 +6,101 @@ import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.quarkus.logging.Log;
-import io.quarkus.scheduler.Scheduled;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.smallrye.faulttolerance.api.TypedGuard;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
-import io.smallrye.faulttolerance.api.RateLimit;
-import org.eclipse.microprofile.faulttolerance.Retry;
-import org.jsoup.Jsoup;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
+/**
+ * Scrapes the picture of the day of every configured source, see {@link WikipediaSourcesConfig}.
+ * <p>
+ * Pages are fetched and parsed concurrently, each behind its own retry, timeout and circuit
+ * breaker. Candidates are then grouped by image: sources sharing a picture (same file URL, or
+ * the same bytes under another name, also across earlier days) share one working master,
+ * dithered image and AI summary. Only the slow network and render work runs in parallel, and
+ * no transaction is held open across it: lookups run in short transactions of their own, and
+ * each source's row is stored in its own, so one failing insert does not lose the others.
+ */
 @ApplicationScoped
 public class WikipediaScraper {
 
+    /**
+     * Picture of the day as found on the page of one source.
+     */
+    record Candidate(String source, String thumbUrl, String originalUrl, String description, String credit) {
+    }
+
+    /**
+     * Image bytes and AI summary shared by all rows showing the same picture.
+     */
+    record ImageData(byte[] original, String sourceUrl, byte[] working, byte[] dithered, String contentHash,
+                     Long perceptualHash, boolean masterChecked, String shortDescription) {
+
+        static ImageData of(PictureOfTheDay potd) {
+            return new ImageData(potd.originalImage, potd.sourceUrl, potd.workingImage, potd.ditheredImage,
+                    potd.contentHash != null ? potd.contentHash : ImageService.contentHash(potd.originalImage),
+                    potd.perceptualHash, potd.masterChecked, potd.shortDescription);
+        }
+    }
+
+    /**
+     * Downloaded image bytes and the URL they were downloaded from.
+     */
+    record Download(byte[] data, String url) {
+    }
+
+    /**
+     * Candidates of one run that show the same picture.
+     */
+    static final class ImageGroup {
+        final String originalUrl;
+        final List<Candidate> candidates = new ArrayList<>();
+        // Downloaded image and its SHA-256, unless the URL matched a stored picture
+        Download downloaded;
+        String contentHash;
+        // Stored picture with the same image, if any
+        PictureOfTheDay existing;
+        // Earlier group of this run with the same image bytes
+        ImageGroup sameAs;
+        ImageData data;
+        // First row stored for this group in this run
+        PictureOfTheDay persisted;
+
+        ImageGroup(String originalUrl) {
+            this.originalUrl = originalUrl;
+        }
+
+        Candidate first() {
+            return candidates.get(0);
+        }
+
+        @Override
+        public String toString() {
+            return originalUrl;
+        }
+    }
+
     @Inject
     ImageService imageService;
 
@@ -35,132 +110,409 @@ public class WikipediaScraper {
     @Inject
     WikipediaPageFetcher pageFetcher;
 
+    @Inject
+    WikipediaSourcesConfig config;
+
     @Inject
     MeterRegistry registry;
 
     @Inject
-    CacheClearer cacheClearer;
+    CacheCoherence cacheCoherence;
+
+    @Inject
+    SimilarityIndex similarityIndex;
+
+    @Inject
+    ImagePipelineMetrics pipelineMetrics;
+
+    @Inject
+    DeviceRenditionService deviceRenditions;
+
+
+    // https://upload.wikimedia.org/wikipedia/commons/a/a4/Name.jpg: (base)(hash dirs)(file name)
+    private static final Pattern ORIGINAL_URL =
+            Pattern.compile("^(https?://upload\\.wikimedia\\.org/wikipedia/[^/]+)/([0-9a-f]/[0-9a-f]{2}/)([^/]+)$");
+
+    private ImagePipelineMetrics.Pipeline ingestPipeline;
+    private ImagePipelineMetrics.Pipeline masterPipeline;
+    private final Map<String, TypedGuard<Candidate>> guards = new HashMap<>();
 
     // Gauge state
     private java.util.concurrent.atomic.AtomicLong lastSuccessfulScrapeTime = new java.util.concurrent.atomic.AtomicLong(0);
 
-    @ConfigProperty(name = "wikipedia.url")
-    String wikipediaUrl;
-
     @ConfigProperty(name = "wikipedia.user-agent")
     String userAgent;
 
+    // Upper bound for each parallel phase (fetch, hash, ingest) of one scrape
+    @ConfigProperty(name = "scraper.ingest-timeout", defaultValue = "PT10M")
+    Duration ingestTimeout;
+
+    // Width of the Wikimedia thumbnail downloaded as source; nothing we render is larger
+    @ConfigProperty(name = "image.source.max-width", defaultValue = "2560")
+    int sourceMaxWidth;
+
+    // Keep the full-resolution original instead (needed for deep zoom into large panoramas)
+    @ConfigProperty(name = "image.source.archival", defaultValue = "false")
+    boolean archival;
+
     @jakarta.annotation.PostConstruct
     void init() {
         registry.gauge("scraper.last_success_timestamp", lastSuccessfulScrapeTime);
+        ingestPipeline = pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_INGEST, "dithered-1bit");
+        masterPipeline = pipelineMetrics.pipeline(ImagePipelineMetrics.ENDPOINT_INGEST, "working-master");
+        config.sources().forEach((name, source) -> guards.put(name, TypedGuard.create(Candidate.class)
+                .withRetry().maxRetries(source.maxRetries()).delay(source.retryDelay().toMillis(), ChronoUnit.MILLIS).done()
+                .withTimeout().duration(source.timeout().toMillis(), ChronoUnit.MILLIS).done()
+                .withCircuitBreaker().name("wikipedia-" + name)
+                .requestVolumeThreshold(4).failureRatio(0.5).delay(1, ChronoUnit.HOURS).done()
+                .build()));
     }
 
-    @Scheduled(cron = "0 0 * * * ?")
-    @Transactional
-    @Retry(maxRetries = 3, delay = 10, delayUnit = ChronoUnit.SECONDS)
-    @CircuitBreaker(requestVolumeThreshold = 4, failureRatio = 0.5, delay = 1, delayUnit = ChronoUnit.HOURS)
-//    @RateLimit(value = 1, window = 10, windowUnit = ChronoUnit.MINUTES)
     @WithSpan("Scraper.scrape")
     public void scrape() {
         Timer.Sample sample = Timer.start(registry);
-        Log.info("Starting daily Wikipedia Picture of the Day scrape...");
+        String result = "failure";
         try {
-            LocalDate today = LocalDate.now();
+            result = scrapePending() ? "success" : "failure";
+        } catch (RuntimeException e) {
+            Log.error("Error scraping Wikipedia", e);
+            throw e;
+        } finally {
+            registry.counter("scraper.execution", Tags.of("result", result)).increment();
+            sample.stop(registry.timer("scraper.duration", "result", result));
+        }
+    }
+
+    // Scrapes every source not stored yet today; true if all of them were stored
+    private boolean scrapePending() {
+        LocalDate today = LocalDate.now();
+
+        // Sources stored earlier today are not fetched again; the default source goes first so
+        // its description is the one summarized for shared pictures
+        List<String> pending = QuarkusTransaction.requiringNew().call(() -> config.sources().keySet().stream()
+                .filter(source -> PictureOfTheDay.findByDate(source, today) == null)
+                .sorted(Comparator.comparing((String source) -> !source.equals(PictureOfTheDay.DEFAULT_SOURCE))
+                        .thenComparing(Comparator.naturalOrder()))
+                .toList());
+        Log.infof("Starting daily Picture of the Day scrape of %s...", pending);
+
+        List<Candidate> fetched = parallel(pending, this::fetch);
+        List<Candidate> candidates = new ArrayList<>();
+        int failed = 0;
+        for (int i = 0; i < pending.size(); i++) {
+            if (fetched.get(i) != null) {
+                candidates.add(fetched.get(i));
+            } else {
+                failed++;
+                countSource(pending.get(i), "failure");
+            }
+        }
+
+        Map<String, ImageGroup> byUrl = new LinkedHashMap<>();
+        for (Candidate candidate : candidates) {
+            byUrl.computeIfAbsent(candidate.originalUrl(), ImageGroup::new).candidates.add(candidate);
+        }
+        List<ImageGroup> groups = new ArrayList<>(byUrl.values());
+        resolve(groups);
+
+        List<ImageGroup> ingests = groups.stream()
+                .filter(group -> group.data == null && group.sameAs == null && group.downloaded != null)
+                .toList();
+        List<ImageData> ingested = parallel(ingests, this::ingest);
+        for (int i = 0; i < ingests.size(); i++) {
+            ingests.get(i).data = ingested.get(i);
+        }
+
+        int stored = 0;
+        for (ImageGroup group : groups) {
+            ImageGroup shared = group.sameAs != null ? group.sameAs : group;
+            if (shared.data == null) {
+                failed += group.candidates.size();
+                group.candidates.forEach(candidate -> countSource(candidate.source(), "failure"));
+                continue;
+            }
+            for (Candidate candidate : group.candidates) {
+                PictureOfTheDay potd = new PictureOfTheDay();
+                potd.source = candidate.source();
+                potd.date = today;
+                potd.description = candidate.description();
+                potd.shortDescription = shared.data.shortDescription();
+                potd.credit = candidate.credit();
+                potd.imageUrl = candidate.originalUrl();
+                potd.contentHash = shared.data.contentHash();
+                potd.originalImage = shared.data.original();
+                potd.sourceUrl = shared.data.sourceUrl();
+                potd.workingImage = shared.data.working();
+                potd.ditheredImage = shared.data.dithered();
+                potd.masterChecked = shared.data.masterChecked();
+                potd.createdAt = LocalDateTime.now();
+                if (shared.data.perceptualHash() != null) {
+                    potd.updatePerceptualHash(shared.data.perceptualHash());
+                }
+
+                try {
+                    // The invalidation commits with the row: replicas may have cached today's miss
+                    QuarkusTransaction.requiringNew().run(() -> {
+                        potd.persist();
+                        cacheCoherence.publish(candidate.source(), today);
+                    });
+                } catch (RuntimeException e) {
+                    Log.errorf(e, "Failed to save the %s Picture of the Day for %s", candidate.source(), today);
+                    failed++;
+                    countSource(candidate.source(), "failure");
+                    continue;
+                }
+                Log.infof("Successfully scraped and saved the %s Picture of the Day for %s", candidate.source(), today);
+                deviceRenditions.prerenderAll(potd, shared.persisted != null ? shared.persisted : shared.existing);
+                if (shared.persisted == null) {
+                    shared.persisted = potd;
+                }
+                countSource(candidate.source(), "success");
+                stored++;
+            }
+        }
 
-            Log.info("Fetching Wikipedia Main Page from: " + wikipediaUrl);
-            Document doc = pageFetcher.fetch(wikipediaUrl, userAgent);
-            Element mpTfp = doc.getElementById("mp-tfp");
+        if (failed == 0) {
+            lastSuccessfulScrapeTime.set(System.currentTimeMillis());
+        }
+        Log.infof("Scrape finished: %d stored, %d failed, %d distinct new images ingested.", stored, failed, ingests.size());
+        return failed == 0;
+    }
 
-            if (mpTfp == null) {
-                Log.error("Could not find 'mp-tfp' element on Wikipedia Main Page. The structure might have changed.");
-                return;
+    /**
+     * Finds the stored picture, or the earlier group of this run, each group's image is the
+     * same as: first by URL, then by the SHA-256 of the downloaded image (the same file under
+     * another name). Bytes and AI summary are only ever shared on such an exact match; the
+     * perceptual hash is stored for the similarity index but never decides reuse, as different
+     * pictures (crops, retouches, flat images) can have close hashes.
+     */
+    private void resolve(List<ImageGroup> groups) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (ImageGroup group : groups) {
+                group.existing = PictureOfTheDay.findByImageUrl(group.originalUrl);
+                if (group.existing != null) {
+                    Log.infof("Image already exists in database (%s, %s). Reusing binary data and AI summary.",
+                            group.existing.source, group.existing.date);
+                    registry.counter("scraper.dedup", Tags.of("match", "url")).increment();
+                    group.data = ImageData.of(group.existing);
+                }
             }
+        });
 
-            // Extract Image URL
-            Element imgElement = mpTfp.select("img").first();
-            if (imgElement == null) {
-                Log.error("No image found in 'mp-tfp' container.");
-                return;
+        List<ImageGroup> unresolved = groups.stream().filter(group -> group.existing == null).toList();
+        List<Download> downloads = parallel(unresolved, this::download);
+        for (int i = 0; i < unresolved.size(); i++) {
+            ImageGroup group = unresolved.get(i);
+            group.downloaded = downloads.get(i);
+            if (group.downloaded != null) {
+                group.contentHash = ImageService.contentHash(group.downloaded.data());
             }
+        }
 
-            String imgUrl = imgElement.attr("src");
-            if (imgUrl.startsWith("//")) {
-                imgUrl = "https:" + imgUrl;
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (ImageGroup group : unresolved) {
+                if (group.contentHash == null) {
+                    continue;
+                }
+                group.existing = PictureOfTheDay.findByContentHash(group.contentHash);
+                if (group.existing != null) {
+                    Log.infof("Image is identical to the %s picture of %s. Reusing binary data and AI summary.",
+                            group.existing.source, group.existing.date);
+                    registry.counter("scraper.dedup", Tags.of("match", "content")).increment();
+                    group.data = ImageData.of(group.existing);
+                }
             }
-            // Get the high res version if possible, but typically the thumb is linked.
-            // Often the 'a' tag wrapping the img points to the file page.
-            // For now we grab the src. To get higher res we might need to manipulate the URL (remove /thumb/ and the suffix)
-            // Example: //upload.wikimedia.org/wikipedia/commons/thumb/a/a4/My_Image.jpg/300px-My_Image.jpg
-            // Original: //upload.wikimedia.org/wikipedia/commons/a/a4/My_Image.jpg
+        });
 
-            String originalImgUrl = getOriginalImageUrl(imgUrl);
-            Log.infof("Found image URL: %s. Resolved to original URL: %s", imgUrl, originalImgUrl);
+        for (int i = 0; i < unresolved.size(); i++) {
+            ImageGroup group = unresolved.get(i);
+            if (group.existing != null || group.contentHash == null) {
+                continue;
+            }
+            for (int j = 0; j < i; j++) {
+                ImageGroup earlier = unresolved.get(j);
+                if (earlier.existing == null && earlier.sameAs == null && group.contentHash.equals(earlier.contentHash)) {
+                    Log.infof("Image of %s is identical to the one of %s.", group.first().source(), earlier.first().source());
+                    registry.counter("scraper.dedup", Tags.of("match", "content")).increment();
+                    group.sameAs = earlier;
+                    break;
+                }
+            }
+        }
+    }
 
-            // Extract Description and Credit
-            // The layout is usually: Image on left, Text on right.
-            // The text is in a container, or just following the image.
-            // In `mp-tfp`, the structure varies but often text is in a table cell or just text nodes.
-            // Based on the provided image, the text is to the right.
-            // Let's try to get all text from mp-tfp.
+    // Image of a group, or null if it could not be downloaded
+    private Download download(ImageGroup group) {
+        try {
+            Download download = downloadSource(group.originalUrl);
+            Log.infof("Image downloaded. Size: %d bytes.", download.data().length);
+            return download;
+        } catch (IOException e) {
+            Log.errorf(e, "Error downloading image %s", group.originalUrl);
+            return null;
+        }
+    }
 
+    /**
+     * Fetches and parses the page of one source under its fault-tolerance guard. Emits null if
+     * the page could not be fetched or does not contain a picture.
+     */
+    private Candidate fetch(String name) {
+        try {
+            Candidate candidate = guards.get(name).call(() -> extract(name));
+            registry.counter("scraper.source.fetch", Tags.of("source", name, "result", candidate != null ? "success" : "no-picture")).increment();
+            return candidate;
+        } catch (Exception e) {
+            Log.errorf(e, "Error scraping source %s", name);
+            registry.counter("scraper.source.fetch", Tags.of("source", name, "result", "failure")).increment();
+            return null;
+        }
+    }
 
-            String description = mpTfp.text();
+    private Candidate extract(String name) throws IOException {
+        WikipediaSourcesConfig.Source source = config.sources().get(name);
+        Log.infof("Fetching %s main page from: %s", name, source.url());
+        Document doc = pageFetcher.fetch(source.url(), userAgent);
+        Element container = doc.selectFirst(source.container());
+        if (container == null) {
+            Log.errorf("Could not find '%s' on %s. The structure might have changed.", source.container(), source.url());
+            return null;
+        }
 
-            Elements creditSelect = doc.select("#mp-tfp > table:nth-child(1) > tbody:nth-child(1) > tr:nth-child(1) > td:nth-child(2) > p:nth-child(2)");
-            String credit = creditSelect.text();
+        // Extract Image URL
+        Element imgElement = container.selectFirst("img");
+        if (imgElement == null) {
+            Log.errorf("No image found in '%s' container of %s.", source.container(), source.url());
+            return null;
+        }
 
-            // Further cleanup of description if needed
-            // e.g. removing "Today's featured picture" title if it was grabbed (usually it's in a header outside mp-tfp, but `mp-tfp` is the content)
+        String imgUrl = imgElement.attr("src");
+        if (imgUrl.startsWith("//")) {
+            imgUrl = "https:" + imgUrl;
+        }
+        // The page shows a thumbnail, e.g.
+        // //upload.wikimedia.org/wikipedia/commons/thumb/a/a4/My_Image.jpg/300px-My_Image.jpg
+        // Original: //upload.wikimedia.org/wikipedia/commons/a/a4/My_Image.jpg
+        String originalImgUrl = getOriginalImageUrl(imgUrl);
+        Log.infof("Found %s image URL: %s. Resolved to original URL: %s", name, imgUrl, originalImgUrl);
 
-            PictureOfTheDay existingPotd = PictureOfTheDay.findByImageUrl(originalImgUrl);
-            byte[] originalImage;
-            byte[] ditheredImage;
-            String shortDescription;
+        // The caption text sits next to the image inside the container
+        String description = container.text();
+        String credit = source.creditSelector().map(selector -> doc.select(selector).text()).orElse("");
+        return new Candidate(name, imgUrl, originalImgUrl, description, credit);
+    }
 
-            if (existingPotd != null) {
-                Log.infof("Image already exists in database (Date: %s). Reusing binary data and AI summary.", existingPotd.date);
-                originalImage = existingPotd.originalImage;
-                ditheredImage = existingPotd.ditheredImage;
-                shortDescription = existingPotd.shortDescription;
-            } else {
-                Log.infof("Image not found in database. Downloading from: %s", originalImgUrl);
-                originalImage = imageService.downloadImage(originalImgUrl);
-                Log.infof("Image downloaded. Size: %d bytes. Proceeding to dither.", originalImage.length);
-                ditheredImage = imageService.ditherImage(originalImage);
+    /**
+     * Masters, dithers, hashes and summarizes the downloaded image of a group. Emits null on failure.
+     */
+    private ImageData ingest(ImageGroup group) {
+        try {
+            byte[] originalImage = group.downloaded.data();
+            Log.info("Creating working master and dithering.");
+            byte[] workingImage = imageService.createWorkingMaster(originalImage, masterPipeline);
+            byte[] ditheredImage = imageService.ditherImage(workingImage != null ? workingImage : originalImage, ingestPipeline);
+            Long perceptualHash = perceptualHash(workingImage != null ? workingImage : originalImage);
 
-                try {
-                    Log.info("Generating short description via AI...");
-                    shortDescription = descriptionAiService.summarize(description);
-                    Log.info("AI Short description generated successfully.");
-                } catch (Exception e) {
-                    Log.error("Failed to generate short description via AI", e);
-                    shortDescription = "Description unavailable";
-                }
+            String shortDescription;
+            try {
+                Log.info("Generating short description via AI...");
+                shortDescription = descriptionAiService.summarize(group.first().description());
+                Log.info("AI Short description generated successfully.");
+            } catch (Exception e) {
+                Log.error("Failed to generate short description via AI", e);
+                shortDescription = "Description unavailable";
             }
+            return new ImageData(originalImage, group.downloaded.url(), workingImage, ditheredImage, group.contentHash, perceptualHash, true, shortDescription);
+        } catch (IOException e) {
+            Log.errorf(e, "Error processing image %s", group.originalUrl);
+            return null;
+        }
+    }
 
-            PictureOfTheDay potd = new PictureOfTheDay();
-            potd.date = today;
-            potd.description = description;
-            potd.shortDescription = shortDescription;
-            potd.credit = credit;
-            potd.imageUrl = originalImgUrl;
-            potd.originalImage = originalImage;
-            potd.ditheredImage = ditheredImage;
-            potd.createdAt = LocalDateTime.now();
-
-            potd.persist();
-            Log.info("Successfully scraped and saved Picture of the Day for " + today);
-            Log.info("Clearing caches to ensure latest data is served.");
-            cacheClearer.clearAllCaches();
-            lastSuccessfulScrapeTime.set(System.currentTimeMillis());
-            registry.counter("scraper.execution", Tags.of("result", "success")).increment();
-            sample.stop(registry.timer("scraper.duration", "result", "success"));
+    // For the similarity index only; a picture without one is just not found there
+    private Long perceptualHash(byte[] image) {
+        try {
+            return imageService.perceptualHash(image);
+        } catch (IOException | RuntimeException e) {
+            Log.warnf(e, "Could not compute the perceptual hash; the picture is left out of the similarity index.");
+            return null;
+        }
+    }
 
-        } catch (IOException e) {
-            Log.error("Error scraping Wikipedia", e);
-            registry.counter("scraper.execution", Tags.of("result", "failure")).increment();
-            sample.stop(registry.timer("scraper.duration", "result", "failure"));
+    /**
+     * Applies {@code task} to every item on the worker pool and returns the results in order.
+     * An item whose task throws or takes longer than {@code scraper.ingest-timeout} yields
+     * null, so one bad source or image never costs the others their result.
+     */
+    private <T, R> List<R> parallel(List<T> items, Function<T, R> task) {
+        if (items.isEmpty()) {
+            return List.of();
+        }
+        List<Uni<R>> unis = new ArrayList<>(items.size());
+        for (T item : items) {
+            unis.add(Uni.createFrom().item(() -> task.apply(item))
+                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                    .ifNoItem().after(ingestTimeout).fail()
+                    .onFailure().recoverWithItem(e -> {
+                        Log.errorf(e, "Scrape step failed for %s", item);
+                        return null;
+                    }));
+        }
+        return Uni.join().all(unis).andCollectFailures().await().indefinitely();
+    }
+
+    private void countSource(String source, String result) {
+        registry.counter("scraper.source.result", Tags.of("source", source, "result", result)).increment();
+    }
+
+    /**
+     * Downloads the image at the size we actually render from: the Wikimedia thumbnail at
+     * {@code image.source.max-width}, falling back to the original if that is not available.
+     * Archival mode always keeps the full original.
+     */
+    private Download downloadSource(String originalImgUrl) throws IOException {
+        String sourceUrl = archival ? null : thumbnailUrl(originalImgUrl, sourceMaxWidth);
+        if (sourceUrl != null) {
+            try {
+                Log.infof("Downloading %dpx rendition from: %s", sourceMaxWidth, sourceUrl);
+                byte[] data = imageService.downloadImage(sourceUrl);
+                registry.counter("scraper.source", Tags.of("kind", "thumbnail")).increment();
+                return new Download(data, sourceUrl);
+            } catch (IOException e) {
+                // Wikimedia refuses thumbnails wider than the original, among other things
+                Log.infof("Thumbnail not available (%s). Falling back to the original.", e.getMessage());
+                registry.counter("scraper.source", Tags.of("kind", "fallback")).increment();
+            }
+        } else {
+            registry.counter("scraper.source", Tags.of("kind", "original")).increment();
+        }
+        Log.infof("Downloading from: %s", originalImgUrl);
+        return new Download(imageService.downloadImage(originalImgUrl), originalImgUrl);
+    }
+
+    /**
+     * Wikimedia thumbnail URL of {@code width} pixels for an original upload URL, or null if
+     * the URL does not have the upload.wikimedia.org layout.
+     * <p>
+     * {@code .../wikipedia/commons/a/a4/Name.jpg -> .../wikipedia/commons/thumb/a/a4/Name.jpg/2560px-Name.jpg}
+     * (vector and TIFF originals are rendered to PNG and JPEG respectively).
+     */
+    static String thumbnailUrl(String originalUrl, int width) {
+        Matcher m = ORIGINAL_URL.matcher(originalUrl);
+        if (!m.matches()) {
+            return null;
+        }
+        String name = m.group(3);
+        String lower = name.toLowerCase(Locale.ROOT);
+        String thumbName;
+        if (lower.endsWith(".svg")) {
+            thumbName = width + "px-" + name + ".png";
+        } else if (lower.endsWith(".tif") || lower.endsWith(".tiff")) {
+            thumbName = "lossy-page1-" + width + "px-" + name + ".jpg";
+        } else {
+            thumbName = width + "px-" + name;
         }
+        return m.group(1) + "/thumb/" + m.group(2) + name + "/" + thumbName;
     }
 
     private String getOriginalImageUrl(String thumbUrl) {
@@ -0,0 +1,46 @@
+package dev.sf13.service;
+
+import io.smallrye.config.ConfigMapping;
+import io.smallrye.config.WithDefault;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Pages the picture of the day is scraped from, keyed by source name, e.g.
+ * <pre>
+ * wikipedia.sources.en.url=https://en.wikipedia.org/wiki/Main_Page
+ * wikipedia.sources.en.container=#mp-tfp
+ * </pre>
+ * Each source is fetched concurrently with its own retry, timeout and circuit breaker, so a
+ * slow or broken edition does not hold up or trip the others.
+ */
+@ConfigMapping(prefix = "wikipedia")
+public interface WikipediaSourcesConfig {
+
+    Map<String, Source> sources();
+
+    // Sent with every page and image request; also injected directly as wikipedia.user-agent
+    String userAgent();
+
+    interface Source {
+        String url();
+
+        // CSS selector of the element holding the picture and its caption
+        @WithDefault("#mp-tfp")
+        String container();
+
+        // CSS selector of the credit line; defaults to none
+        Optional<String> creditSelector();
+
+        @WithDefault("3")
+        int maxRetries();
+
+        @WithDefault("PT10S")
+        Duration retryDelay();
+
+        @WithDefault("PT30S")
+        Duration timeout();
+    }
+}
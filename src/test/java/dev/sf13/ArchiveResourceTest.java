@@ -0,0 +1,181 @@
+package dev.sf13;
+
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+
+@QuarkusTest
+public class ArchiveResourceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 1);
+
+    @BeforeEach
+    void setup() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay.deleteAll();
+            persist("en", DATE, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 1}, "hash-1");
+            persist("en", DATE.plusDays(1), new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 2}, "hash-2");
+            persist("de", DATE, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 1}, "hash-1");
+        });
+    }
+
+    private static void persist(String source, LocalDate date, byte[] image, String hash) {
+        PictureOfTheDay potd = new PictureOfTheDay();
+        potd.source = source;
+        potd.date = date;
+        potd.description = "Desc " + source + " " + date;
+        potd.shortDescription = "Short";
+        potd.credit = "Credit";
+        potd.imageUrl = "http://example.com/" + date + ".jpg";
+        potd.contentHash = hash;
+        potd.originalImage = image;
+        potd.ditheredImage = new byte[]{(byte) 0x89, 'P', 'N', 'G'};
+        potd.updatePerceptualHash(42L);
+        potd.createdAt = LocalDateTime.now();
+        potd.persist();
+    }
+
+    @Test
+    public void testExportImportRoundTrip() throws IOException {
+        byte[] archive = given()
+                .when().get("/api/admin/archive")
+                .then()
+                .statusCode(200)
+                .contentType("application/zip")
+                .extract().asByteArray();
+
+        List<String> entries = entryNames(archive);
+        assert entries.get(0).equals("metadata.ndjson") : entries;
+        assert entries.contains("images/de/2024-03-01/original.jpg") : entries;
+        assert entries.contains("images/en/2024-03-02/dithered.png") : entries;
+        assert entries.size() == 1 + 3 * 2 : entries;
+
+        // Fresh environment: everything is imported, images included
+        QuarkusTransaction.requiringNew().run(() -> PictureOfTheDay.deleteAll());
+        given()
+                .contentType("application/zip")
+                .body(archive)
+                .when().post("/api/admin/archive")
+                .then()
+                .statusCode(200)
+                .body("imported", is(3))
+                .body("skipped", is(0))
+                .body("images", is(6));
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay potd = PictureOfTheDay.findByDate("en", DATE.plusDays(1));
+            assert potd != null;
+            assert Arrays.equals(potd.originalImage, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 2});
+            assert potd.description.equals("Desc en 2024-03-02");
+            assert potd.phashBand0 != null;
+        });
+
+        // Second run: nothing changes
+        given()
+                .contentType("application/zip")
+                .body(archive)
+                .when().post("/api/admin/archive")
+                .then()
+                .statusCode(200)
+                .body("imported", is(0))
+                .body("skipped", is(3))
+                .body("images", is(0));
+    }
+
+    @Test
+    public void testExportFilteredBySource() throws IOException {
+        byte[] archive = given()
+                .queryParam("source", "de")
+                .when().get("/api/admin/archive")
+                .then()
+                .statusCode(200)
+                .extract().asByteArray();
+
+        List<String> entries = entryNames(archive);
+        assert entries.equals(List.of("metadata.ndjson", "images/de/2024-03-01/original.jpg", "images/de/2024-03-01/dithered.png")) : entries;
+    }
+
+    @Test
+    public void testImportLeavesConflictingPicturesAlone() throws IOException {
+        byte[] archive = given()
+                .when().get("/api/admin/archive")
+                .then()
+                .statusCode(200)
+                .extract().asByteArray();
+
+        // Another picture is stored for one of the dates, still without its original
+        QuarkusTransaction.requiringNew().run(() -> PictureOfTheDay.update(
+                "contentHash = 'hash-other', originalImage = null where source = 'en' and date = ?1", DATE));
+
+        given()
+                .contentType("application/zip")
+                .body(archive)
+                .when().post("/api/admin/archive")
+                .then()
+                .statusCode(200)
+                .body("conflicts", is(1))
+                .body("skipped", is(2))
+                .body("images", is(0));
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay potd = PictureOfTheDay.findByDate("en", DATE);
+            assert potd.originalImage == null;
+            assert potd.contentHash.equals("hash-other");
+        });
+    }
+
+    @Test
+    public void testImportRejectsMalformedArchive() {
+        given()
+                .contentType("application/zip")
+                .body("not a zip".getBytes())
+                .when().post("/api/admin/archive")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    public void testBodyLimitOnlyAppliesToArchive() {
+        byte[] body = new byte[2048];
+        // Over the 1K test limit of every other endpoint
+        given()
+                .body(body)
+                .when().post("/api/potd/scrape")
+                .then()
+                .statusCode(413);
+
+        // Archives are read, here found malformed
+        given()
+                .contentType("application/zip")
+                .body(body)
+                .when().post("/api/admin/archive")
+                .then()
+                .statusCode(400);
+    }
+
+        private static List<String> entryNames(byte[] archive) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+}
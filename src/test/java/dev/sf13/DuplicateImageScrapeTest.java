@@ -1,8 +1,11 @@
 package dev.sf13;
 
 import dev.sf13.entity.PictureOfTheDay;
+import dev.sf13.service.ImageService;
 import dev.sf13.service.WikipediaPageFetcher;
 import dev.sf13.service.WikipediaScraper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.test.InjectMock;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.QuarkusTestProfile;
@@ -20,9 +23,13 @@ import org.mockito.Mockito;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @QuarkusTest
@@ -32,19 +39,37 @@ public class DuplicateImageScrapeTest {
     public static class TestProfile implements QuarkusTestProfile {
         @Override
         public Map<String, String> getConfigOverrides() {
-            return Map.of(
-                "dev.sf13.service.WikipediaScraper/scrape/CircuitBreaker/enabled", "false",
-                "dev.sf13.service.WikipediaScraper/scrape/Retry/enabled", "false",
-                "dev.sf13.service.WikipediaScraper/scrape/RateLimit/enabled", "false"
-            );
+            // All sources point at pages with the English layout; no retries so failures show up at once
+            Map<String, String> config = new HashMap<>();
+            for (String source : SOURCES) {
+                config.put("wikipedia.sources." + source + ".url", pageUrl(source));
+                config.put("wikipedia.sources." + source + ".container", "#mp-tfp");
+                config.put("wikipedia.sources." + source + ".max-retries", "0");
+            }
+            return config;
         }
     }
 
+    static final List<String> SOURCES = List.of("en", "de", "fr", "commons");
+
+    static String pageUrl(String source) {
+        return "https://" + source + ".wikipedia.test/wiki/Main_Page";
+    }
+
+    // A fresh document per fetch: sources are parsed concurrently
+    private static Document mainPage(String thumbUrl) {
+        Document doc = new Document("https://en.wikipedia.org/wiki/Main_Page");
+        Element mpTfp = doc.appendElement("div").attr("id", "mp-tfp");
+        mpTfp.appendElement("img").attr("src", thumbUrl);
+        mpTfp.appendText("New Description");
+        return doc;
+    }
+
     @Inject
     WikipediaScraper scraper;
 
     @InjectMock
-    dev.sf13.service.ImageService imageService;
+    ImageService imageService;
 
     @InjectMock
     dev.sf13.service.DescriptionAiService descriptionAiService;
@@ -52,6 +77,9 @@ public class DuplicateImageScrapeTest {
     @InjectMock
     WikipediaPageFetcher pageFetcher;
 
+    @Inject
+    MeterRegistry registry;
+
     @BeforeEach
     @Transactional
     void setup() {
@@ -59,7 +87,6 @@ public class DuplicateImageScrapeTest {
     }
 
     @Test
-    @Transactional
     public void testReuseExistingImage() throws IOException {
         String imageUrl = "https://upload.wikimedia.org/wikipedia/commons/a/a4/My_Image.jpg";
         String thumbUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/a/a4/My_Image.jpg/300px-My_Image.jpg";
@@ -74,15 +101,10 @@ public class DuplicateImageScrapeTest {
         oldPotd.description = "Old Description";
         oldPotd.credit = "Old Credit";
         oldPotd.createdAt = LocalDateTime.now().minusDays(1);
-        oldPotd.persist();
+        QuarkusTransaction.requiringNew().run(() -> oldPotd.persist());
 
         // 2. Mock Page Fetcher to return a page with this image
-        Document doc = new Document("https://en.wikipedia.org/wiki/Main_Page");
-        Element mpTfp = doc.appendElement("div").attr("id", "mp-tfp");
-        mpTfp.appendElement("img").attr("src", thumbUrl);
-        mpTfp.appendText("New Description");
-
-        when(pageFetcher.fetch(anyString(), anyString())).thenReturn(doc);
+        when(pageFetcher.fetch(anyString(), anyString())).thenAnswer(invocation -> mainPage(thumbUrl));
 
         // 3. Run scrape
         scraper.scrape();
@@ -94,10 +116,10 @@ public class DuplicateImageScrapeTest {
         verify(descriptionAiService, never()).summarize(anyString());
 
         // 5. Verify new record created
-        PictureOfTheDay newPotd = PictureOfTheDay.findByDate(LocalDate.now());
+        PictureOfTheDay newPotd = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate(LocalDate.now()));
         if (newPotd == null) {
             // Debugging
-            System.out.println("All POTDs: " + PictureOfTheDay.findAll().list());
+            System.out.println("All POTDs: " + QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findAll().list()));
         }
         assert newPotd != null;
         assert newPotd.imageUrl.equals(imageUrl);
@@ -106,34 +128,177 @@ public class DuplicateImageScrapeTest {
     }
 
     @Test
-    @Transactional
     public void testNewImageDownload() throws IOException {
         String imageUrl = "https://upload.wikimedia.org/wikipedia/commons/b/b4/New_Image.jpg";
         String thumbUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/b/b4/New_Image.jpg/300px-New_Image.jpg";
 
         // 1. Mock Page Fetcher
-        Document doc = new Document("https://en.wikipedia.org/wiki/Main_Page");
-        Element mpTfp = doc.appendElement("div").attr("id", "mp-tfp");
-        mpTfp.appendElement("img").attr("src", thumbUrl);
-        mpTfp.appendText("New Description");
+        String sourceUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/b/b4/New_Image.jpg/2560px-New_Image.jpg";
 
-        when(pageFetcher.fetch(anyString(), anyString())).thenReturn(doc);
-        when(imageService.downloadImage(imageUrl)).thenReturn(new byte[]{10, 20});
-        when(imageService.ditherImage(any())).thenReturn(new byte[]{30, 40});
+        when(pageFetcher.fetch(anyString(), anyString())).thenAnswer(invocation -> mainPage(thumbUrl));
+        when(imageService.downloadImage(sourceUrl)).thenReturn(new byte[]{10, 20});
+        when(imageService.ditherImage(any(), any())).thenReturn(new byte[]{30, 40});
         when(descriptionAiService.summarize(anyString())).thenReturn("New AI Summary");
 
         // 2. Run scrape
         scraper.scrape();
 
-        // 3. Verify interactions
-        verify(imageService).downloadImage(imageUrl);
+        // 3. Verify interactions: the right-sized thumbnail is fetched, not the full original
+        verify(imageService).downloadImage(sourceUrl);
+        verify(imageService, never()).downloadImage(imageUrl);
         verify(descriptionAiService).summarize("New Description");
 
         // 4. Verify new record
-        PictureOfTheDay newPotd = PictureOfTheDay.findByDate(LocalDate.now());
+        PictureOfTheDay newPotd = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate(LocalDate.now()));
         assert newPotd != null;
         assert newPotd.imageUrl.equals(imageUrl);
         assert newPotd.originalImage.length == 2;
+        assert newPotd.sourceUrl.equals(sourceUrl);
+        assert newPotd.storesReducedSource();
         assert newPotd.shortDescription.equals("New AI Summary");
     }
+
+    @Test
+    public void testReuseImageWithSameContent() throws IOException {
+        String imageUrl = "https://upload.wikimedia.org/wikipedia/commons/c/c4/Renamed_Image.jpg";
+        String thumbUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/c/c4/Renamed_Image.jpg/300px-Renamed_Image.jpg";
+        byte[] image = {7, 8, 9};
+
+        // 1. Same file stored earlier under another name
+        PictureOfTheDay oldPotd = new PictureOfTheDay();
+        oldPotd.date = LocalDate.now().minusDays(1);
+        oldPotd.imageUrl = "https://upload.wikimedia.org/wikipedia/commons/9/9a/Original_Name.jpg";
+        oldPotd.originalImage = image;
+        oldPotd.contentHash = ImageService.contentHash(image);
+        oldPotd.ditheredImage = new byte[]{4, 5, 6};
+        oldPotd.shortDescription = "Old AI Description";
+        oldPotd.createdAt = LocalDateTime.now().minusDays(1);
+        QuarkusTransaction.requiringNew().run(() -> oldPotd.persist());
+
+        when(pageFetcher.fetch(anyString(), anyString())).thenAnswer(invocation -> mainPage(thumbUrl));
+        when(imageService.downloadImage(anyString())).thenReturn(image.clone());
+
+        // 2. Run scrape
+        scraper.scrape();
+
+        // 3. The download has the stored bytes: nothing is rendered or summarized again
+        verify(imageService, never()).ditherImage(any(), any());
+        verify(descriptionAiService, never()).summarize(anyString());
+
+        PictureOfTheDay newPotd = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate(LocalDate.now()));
+        assert newPotd != null;
+        assert newPotd.imageUrl.equals(imageUrl);
+        assert newPotd.originalImage.length == 3;
+        assert newPotd.shortDescription.equals("Old AI Description");
+    }
+
+    @Test
+    public void testPerceptualMatchIsNotReused() throws IOException {
+        String thumbUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/c/c5/Cropped_Image.jpg/300px-Cropped_Image.jpg";
+        String sourceUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/c/c5/Cropped_Image.jpg/2560px-Cropped_Image.jpg";
+        long hash = 0x1234_5678_9ABC_DEF0L;
+
+        PictureOfTheDay oldPotd = new PictureOfTheDay();
+        oldPotd.date = LocalDate.now().minusDays(1);
+        oldPotd.imageUrl = "https://upload.wikimedia.org/wikipedia/commons/9/9b/Other_Image.jpg";
+        oldPotd.originalImage = new byte[]{7, 8, 9};
+        oldPotd.shortDescription = "Old AI Description";
+        oldPotd.updatePerceptualHash(hash);
+        oldPotd.createdAt = LocalDateTime.now().minusDays(1);
+        QuarkusTransaction.requiringNew().run(() -> oldPotd.persist());
+
+        when(pageFetcher.fetch(anyString(), anyString())).thenAnswer(invocation -> mainPage(thumbUrl));
+        when(imageService.downloadImage(sourceUrl)).thenReturn(new byte[]{10, 20});
+        // One bit off, e.g. a crop or retouch of the stored picture
+        when(imageService.perceptualHash(any(byte[].class))).thenReturn(hash ^ 1);
+        when(descriptionAiService.summarize(anyString())).thenReturn("New AI Summary");
+
+        scraper.scrape();
+
+        // A close hash only puts the picture in the similarity index
+        verify(imageService).downloadImage(sourceUrl);
+        PictureOfTheDay newPotd = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate(LocalDate.now()));
+        assert newPotd != null;
+        assert newPotd.originalImage.length == 2;
+        assert newPotd.shortDescription.equals("New AI Summary");
+        assert newPotd.perceptualHash == (hash ^ 1);
+    }
+
+    @Test
+    public void testFallbackToOriginalWhenThumbnailUnavailable() throws IOException {
+        String imageUrl = "https://upload.wikimedia.org/wikipedia/commons/d/d4/Small_Image.png";
+        String thumbUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/d/d4/Small_Image.png/300px-Small_Image.png";
+        String sourceUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/d/d4/Small_Image.png/2560px-Small_Image.png";
+
+
+        when(pageFetcher.fetch(anyString(), anyString())).thenAnswer(invocation -> mainPage(thumbUrl));
+        // Wikimedia refuses thumbnails larger than the original
+        when(imageService.downloadImage(sourceUrl)).thenThrow(new IOException("Server returned HTTP response code: 400"));
+        when(imageService.downloadImage(imageUrl)).thenReturn(new byte[]{10, 20, 30});
+        when(descriptionAiService.summarize(anyString())).thenReturn("New AI Summary");
+
+        scraper.scrape();
+
+        verify(imageService).downloadImage(sourceUrl);
+        verify(imageService).downloadImage(imageUrl);
+        PictureOfTheDay newPotd = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate(LocalDate.now()));
+        assert newPotd != null;
+        assert newPotd.imageUrl.equals(imageUrl);
+        assert newPotd.originalImage.length == 3;
+        assert newPotd.sourceUrl.equals(imageUrl);
+        assert !newPotd.storesReducedSource();
+    }
+
+    @Test
+    public void testSharedImageAcrossSources() throws IOException {
+        String thumbUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/e/e4/Shared_Image.jpg/300px-Shared_Image.jpg";
+        String sourceUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/e/e4/Shared_Image.jpg/2560px-Shared_Image.jpg";
+        // Commons links the same picture under another file name
+        String renamedThumbUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/f/f4/Shared_Image_2.jpg/300px-Shared_Image_2.jpg";
+
+        when(pageFetcher.fetch(anyString(), anyString())).thenAnswer(invocation -> mainPage(thumbUrl));
+        when(pageFetcher.fetch(eq(pageUrl("commons")), anyString())).thenAnswer(invocation -> mainPage(renamedThumbUrl));
+        // Both files have the same bytes
+        when(imageService.downloadImage(anyString())).thenAnswer(invocation -> new byte[]{10, 20});
+        when(imageService.ditherImage(any(), any())).thenReturn(new byte[]{30, 40});
+        when(descriptionAiService.summarize(anyString())).thenReturn("New AI Summary");
+
+        scraper.scrape();
+
+        // One row per source, but the picture is rendered and summarized once
+        for (String source : SOURCES) {
+            PictureOfTheDay potd = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate(source, LocalDate.now()));
+            assert potd != null : source;
+            assert potd.originalImage.length == 2;
+            assert potd.shortDescription.equals("New AI Summary");
+        }
+        assert QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate("commons", LocalDate.now())).imageUrl.contains("Shared_Image_2.jpg");
+        verify(imageService, times(1)).downloadImage(sourceUrl);
+        verify(imageService, times(1)).downloadImage(contains("2560px-Shared_Image_2"));
+        verify(imageService, times(1)).ditherImage(any(), any());
+        verify(descriptionAiService, times(1)).summarize(anyString());
+    }
+
+    @Test
+    public void testFailingImageDoesNotAbortOtherSources() throws IOException {
+        String thumbUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/g/g4/Good_Image.jpg/300px-Good_Image.jpg";
+        String brokenThumbUrl = "https://upload.wikimedia.org/wikipedia/commons/thumb/h/h4/Broken_Image.jpg/300px-Broken_Image.jpg";
+        double failures = registry.counter("scraper.execution", "result", "failure").count();
+
+        when(pageFetcher.fetch(anyString(), anyString())).thenAnswer(invocation -> mainPage(thumbUrl));
+        when(pageFetcher.fetch(eq(pageUrl("commons")), anyString())).thenAnswer(invocation -> mainPage(brokenThumbUrl));
+        when(imageService.downloadImage(anyString())).thenAnswer(invocation -> new byte[]{10, 20});
+        // Not an IOException: escapes the download step of that one image
+        when(imageService.downloadImage(contains("Broken_Image"))).thenThrow(new IllegalStateException("broken"));
+        when(descriptionAiService.summarize(anyString())).thenReturn("New AI Summary");
+
+        scraper.scrape();
+
+        for (String source : List.of("en", "de", "fr")) {
+            assert QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate(source, LocalDate.now())) != null : source;
+        }
+        assert QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate("commons", LocalDate.now())) == null;
+        assert registry.counter("scraper.execution", "result", "failure").count() == failures + 1;
+        assert registry.counter("scraper.source.result", "source", "commons", "result", "failure").count() >= 1;
+    }
 }
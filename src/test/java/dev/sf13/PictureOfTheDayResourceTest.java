@@ -1,6 +1,7 @@
 package dev.sf13;
 
 import dev.sf13.entity.PictureOfTheDay;
+import dev.sf13.service.ImageService;
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.transaction.Transactional;
@@ -9,10 +10,13 @@ import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Random;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 
 @QuarkusTest
 public class PictureOfTheDayResourceTest {
@@ -96,4 +100,364 @@ public class PictureOfTheDayResourceTest {
             .statusCode(200)
             .contentType("image/png");
     }
+
+    @Test
+    public void testOversizedRenderRejected() {
+        byte[] validPng = java.util.Base64.getDecoder().decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mP8z8BQDwAEhQGAhKmMIQAAAABJRU5ErkJggg==");
+        LocalDate date = LocalDate.now().minusDays(3);
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay potd = new PictureOfTheDay();
+            potd.date = date;
+            potd.imageUrl = "http://example.com/big.png";
+            potd.originalImage = validPng;
+            potd.persist();
+        });
+
+        given()
+            .when().get("/api/potd/" + date + "/20000/20000/image")
+            .then()
+            .statusCode(400);
+
+        given()
+            .when().get("/api/potd/" + date + "/8/8/image")
+            .then()
+            .statusCode(200)
+            .contentType("image/png");
+    }
+
+    @Test
+    public void testGetTrmnlImageMultiLevel() {
+        byte[] validPng = java.util.Base64.getDecoder().decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mP8z8BQDwAEhQGAhKmMIQAAAABJRU5ErkJggg==");
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay potd = new PictureOfTheDay();
+            potd.date = LocalDate.now();
+            potd.imageUrl = "http://example.com/img.png";
+            potd.originalImage = validPng;
+            potd.persist();
+        });
+
+        given()
+            .when().get("/api/potd/today/trmnl?bits=4")
+            .then()
+            .statusCode(200)
+            .contentType("image/png");
+
+        // 800x480 at 2 bits per pixel, packed
+        byte[] raw = given()
+            .when().get("/api/potd/today/trmnl?bits=2&format=raw")
+            .then()
+            .statusCode(200)
+            .contentType("application/octet-stream")
+            .extract().asByteArray();
+        org.junit.jupiter.api.Assertions.assertEquals(800 * 480 * 2 / 8, raw.length);
+
+        given()
+            .when().get("/api/potd/today/trmnl?bits=3")
+            .then()
+            .statusCode(400);
+    }
+
+    @Test
+    public void testGetDeviceImage() {
+        byte[] validPng = java.util.Base64.getDecoder().decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mP8z8BQDwAEhQGAhKmMIQAAAABJRU5ErkJggg==");
+        LocalDate date = LocalDate.now().minusDays(4);
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay potd = new PictureOfTheDay();
+            potd.date = date;
+            potd.imageUrl = "http://example.com/device.png";
+            potd.originalImage = validPng;
+            potd.persist();
+        });
+
+        given()
+            .when().get("/api/potd/" + date + "/device/trmnl-gray")
+            .then()
+            .statusCode(200)
+            .contentType("image/png");
+
+        given()
+            .when().get("/api/potd/" + date + "/device/no-such-panel")
+            .then()
+            .statusCode(404);
+    }
+
+    @Test
+    public void testContactSheet() {
+        byte[] validPng = java.util.Base64.getDecoder().decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mP8z8BQDwAEhQGAhKmMIQAAAABJRU5ErkJggg==");
+        LocalDate first = LocalDate.now().minusDays(11);
+        LocalDate second = LocalDate.now().minusDays(10);
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (LocalDate date : new LocalDate[]{first, second}) {
+                PictureOfTheDay potd = new PictureOfTheDay();
+                potd.date = date;
+                potd.imageUrl = "http://example.com/sheet-" + date + ".png";
+                potd.shortDescription = "Sheet " + date;
+                potd.originalImage = validPng;
+                potd.persist();
+            }
+        });
+
+        given()
+            .when().get("/api/potd/contact-sheet?from=" + first + "&to=" + second + "&tile=32")
+            .then()
+            .statusCode(200)
+            .body("tiles.size()", is(2))
+            .body("tiles[0].date", is(second.toString()))
+            .body("columns", is(2))
+            .body("spriteUrl", notNullValue());
+
+        given()
+            .when().get("/api/potd/contact-sheet/image?dates=" + first + "," + second + "&tile=32")
+            .then()
+            .statusCode(200)
+            .contentType("image/jpeg");
+
+        given()
+            .when().get("/api/potd/contact-sheet/image?from=2000-01-01&to=2000-01-31&tile=32")
+            .then()
+            .statusCode(404);
+
+        given()
+            .when().get("/api/potd/contact-sheet?dates=" + first + "&tile=4096")
+            .then()
+            .statusCode(400);
+    }
+
+    @Test
+    public void testListArchive() {
+        LocalDate newest = LocalDate.now().minusDays(20);
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (int i = 0; i < 3; i++) {
+                PictureOfTheDay potd = new PictureOfTheDay();
+                potd.date = newest.minusDays(i);
+                potd.imageUrl = "http://example.com/archive-" + i + ".png";
+                potd.shortDescription = "Archive " + i;
+                potd.persist();
+            }
+        });
+
+        given()
+            .when().get("/api/potd?limit=2")
+            .then()
+            .statusCode(200)
+            .body("items.size()", is(2))
+            .body("items[0].date", is(newest.toString()))
+            .body("items[0].source", is("en"))
+            .body("items[0].shortDescription", is("Archive 0"))
+            .body("nextBefore", is(newest.minusDays(1).toString()))
+            .body("nextBeforeSource", is("en"));
+
+        given()
+            .when().get("/api/potd?limit=2&before=" + newest.minusDays(1) + "&beforeSource=en")
+            .then()
+            .statusCode(200)
+            .body("items.size()", is(1))
+            .body("items[0].date", is(newest.minusDays(2).toString()))
+            .body("nextBefore", nullValue());
+
+        given()
+            .when().get("/api/potd?limit=0")
+            .then()
+            .statusCode(400);
+    }
+
+    @Test
+    public void testRegionAndTiles() throws java.io.IOException {
+        java.awt.image.BufferedImage img = new java.awt.image.BufferedImage(600, 400, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(img, "png", baos);
+        byte[] png = baos.toByteArray();
+        LocalDate date = LocalDate.now().minusDays(30);
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay potd = new PictureOfTheDay();
+            potd.date = date;
+            potd.imageUrl = "http://example.com/pano.png";
+            potd.originalImage = png;
+            potd.persist();
+        });
+
+        byte[] region = given()
+            .when().get("/api/potd/" + date + "/region?x=100&y=100&w=200&h=100&scale=0.5")
+            .then()
+            .statusCode(200)
+            .contentType("image/jpeg")
+            .extract().asByteArray();
+        java.awt.image.BufferedImage regionImage = javax.imageio.ImageIO.read(new java.io.ByteArrayInputStream(region));
+        org.junit.jupiter.api.Assertions.assertEquals(100, regionImage.getWidth());
+        org.junit.jupiter.api.Assertions.assertEquals(50, regionImage.getHeight());
+
+        given()
+            .when().get("/api/potd/" + date + "/region?x=1000&y=1000&w=10&h=10")
+            .then()
+            .statusCode(400);
+
+        given()
+            .when().get("/api/potd/" + date + "/tiles")
+            .then()
+            .statusCode(200)
+            .body("width", is(600))
+            .body("maxLevel", is(10));
+
+        // Right edge tile of the full-resolution level is clipped to the image
+        byte[] tile = given()
+            .when().get("/api/potd/" + date + "/tiles/10/2/1")
+            .then()
+            .statusCode(200)
+            .contentType("image/jpeg")
+            .extract().asByteArray();
+        java.awt.image.BufferedImage tileImage = javax.imageio.ImageIO.read(new java.io.ByteArrayInputStream(tile));
+        org.junit.jupiter.api.Assertions.assertEquals(88, tileImage.getWidth());
+        org.junit.jupiter.api.Assertions.assertEquals(144, tileImage.getHeight());
+
+        given()
+            .when().get("/api/potd/" + date + "/tiles/10/3/0")
+            .then()
+            .statusCode(404);
+    }
+
+    @Test
+    public void testSimilarPictures() {
+        long hash = 0x5A5A_1234_F0F0_0F0FL;
+        LocalDate date = LocalDate.now().minusDays(50);
+        QuarkusTransaction.requiringNew().run(() -> {
+            // The last one differs in every 16-bit band, so only a full scan finds it
+            long[] hashes = {hash, hash ^ 0b101, ~hash, hash ^ 0x0001_0001_0001_0001L};
+            for (int i = 0; i < hashes.length; i++) {
+                PictureOfTheDay potd = new PictureOfTheDay();
+                potd.date = date.minusDays(i);
+                potd.imageUrl = "http://example.com/similar-" + i + ".png";
+                potd.updatePerceptualHash(hashes[i]);
+                potd.persist();
+            }
+        });
+
+        given()
+            .when().get("/api/potd/" + date + "/similar")
+            .then()
+            .statusCode(200)
+            .body("size()", is(1))
+            .body("[0].date", is(date.minusDays(1).toString()))
+            .body("[0].distance", is(2));
+
+        given()
+            .when().get("/api/potd/" + date + "/similar?maxDistance=4")
+            .then()
+            .statusCode(200)
+            .body("size()", is(2))
+            .body("[1].date", is(date.minusDays(3).toString()))
+            .body("[1].distance", is(4));
+    }
+
+    @Test
+    public void testOriginalImageRanges() {
+        byte[] original = new byte[3000];
+        new Random(1).nextBytes(original);
+        LocalDate date = LocalDate.now().minusDays(60);
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay potd = new PictureOfTheDay();
+            potd.date = date;
+            potd.imageUrl = "http://example.com/large.jpg";
+            potd.sourceUrl = "http://example.com/thumb/large.jpg/2560px-large.jpg";
+            potd.contentHash = "abc123";
+            potd.originalImage = original;
+            potd.persist();
+        });
+        String url = "/api/potd/" + date + "/image";
+
+        byte[] full = given()
+            .when().get(url)
+            .then()
+            .statusCode(200)
+            .header("Accept-Ranges", "bytes")
+            .header("ETag", "\"abc123\"")
+            .header("Link", "<http://example.com/large.jpg>; rel=\"original\"")
+            .extract().asByteArray();
+        assert Arrays.equals(full, original);
+
+        // Resume: spans several stream windows (1 KiB in tests)
+        byte[] part = given()
+            .header("Range", "bytes=1000-2499")
+            .header("If-Range", "\"abc123\"")
+            .when().get(url)
+            .then()
+            .statusCode(206)
+            .header("Content-Range", "bytes 1000-2499/3000")
+            .extract().asByteArray();
+        assert Arrays.equals(part, Arrays.copyOfRange(original, 1000, 2500));
+
+        byte[] tail = given()
+            .header("Range", "bytes=-10")
+            .when().get(url)
+            .then()
+            .statusCode(206)
+            .header("Content-Range", "bytes 2990-2999/3000")
+            .extract().asByteArray();
+        assert Arrays.equals(tail, Arrays.copyOfRange(original, 2990, 3000));
+
+        // The client's partial copy is of another version: everything is sent again
+        given()
+            .header("Range", "bytes=1000-")
+            .header("If-Range", "\"other\"")
+            .when().get(url)
+            .then()
+            .statusCode(200);
+
+        given()
+            .header("Range", "bytes=3000-")
+            .when().get(url)
+            .then()
+            .statusCode(416)
+            .header("Content-Range", "bytes */3000");
+
+        given()
+            .when().get("/api/potd/" + date.minusDays(1) + "/image")
+            .then()
+            .statusCode(404);
+    }
+
+    @Test
+    public void testRenderedImageRanges() {
+        byte[] validPng = java.util.Base64.getDecoder().decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mP8z8BQDwAEhQGAhKmMIQAAAABJRU5ErkJggg==");
+        LocalDate date = LocalDate.now().minusDays(61);
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay potd = new PictureOfTheDay();
+            potd.date = date;
+            potd.imageUrl = "http://example.com/small.png";
+            potd.originalImage = validPng;
+            potd.persist();
+        });
+        String url = "/api/potd/" + date + "/16/image";
+
+        io.restassured.response.Response first = given()
+            .when().get(url)
+            .then()
+            .statusCode(200)
+            .header("Accept-Ranges", "bytes")
+            .extract().response();
+        byte[] full = first.asByteArray();
+        String etag = first.header("ETag");
+        assert etag.equals("\"" + ImageService.contentHash(full) + "\"");
+
+        byte[] part = given()
+            .header("Range", "bytes=8-")
+            .header("If-Range", etag)
+            .when().get(url)
+            .then()
+            .statusCode(206)
+            .header("Content-Range", "bytes 8-" + (full.length - 1) + "/" + full.length)
+            .extract().asByteArray();
+        assert Arrays.equals(part, Arrays.copyOfRange(full, 8, full.length));
+
+        // The cached render itself is untouched by the partial response
+        given()
+            .when().get(url)
+            .then()
+            .statusCode(200)
+            .header("ETag", etag);
+    }
 }
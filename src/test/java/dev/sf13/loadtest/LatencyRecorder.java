@@ -0,0 +1,49 @@
+package dev.sf13.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects raw latency samples for one endpoint in one phase. Samples are kept exactly
+ * (no histogram buckets) so p999 on a few hundred thousand requests is still honest.
+ */
+final class LatencyRecorder {
+
+    private long[] samples = new long[4096];
+    private int size;
+    private long errors;
+
+    synchronized void record(long nanos, boolean success) {
+        if (!success) {
+            errors++;
+        }
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    synchronized Snapshot snapshot() {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return new Snapshot(sorted, errors);
+    }
+
+    record Snapshot(long[] sorted, long errors) {
+
+        long count() {
+            return sorted.length;
+        }
+
+        double percentileMillis(double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+        }
+
+        double maxMillis() {
+            return sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1_000_000.0;
+        }
+    }
+}
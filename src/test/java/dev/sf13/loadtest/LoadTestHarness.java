@@ -0,0 +1,317 @@
+package dev.sf13.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * End-to-end load test. Simulates a fleet of devices polling the TRMNL and JSON endpoints plus
+ * gallery-style historical renders, first one endpoint at a time (so CPU and heap can be
+ * attributed) and then mixed while scrapes run against {@link StubWikipediaServer}.
+ * <p>
+ * Run with {@code ./gradlew loadTest}; results land in {@code build/reports/loadtest}.
+ * The client runs inside the same JVM as the application, so CPU figures include the
+ * (small) cost of the virtual-thread HTTP clients.
+ */
+@QuarkusTest
+@TestProfile(LoadTestProfile.class)
+@Tag("loadtest")
+public class LoadTestHarness {
+
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 32);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmup-seconds", 10);
+    private static final int PHASE_SECONDS = Integer.getInteger("loadtest.phase-seconds", 30);
+    private static final int HISTORY_DAYS = Integer.getInteger("loadtest.history-days", 60);
+    private static final int SCRAPE_INTERVAL_SECONDS = Integer.getInteger("loadtest.scrape-interval-seconds", 10);
+    private static final Path REPORT_DIR = Path.of(System.getProperty("loadtest.report-dir", "build/reports/loadtest"));
+    private static final int[] HISTORY_WIDTHS = {320, 480, 640, 800, 1024, 1280};
+
+    @TestHTTPResource("/")
+    URL baseUrl;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Test
+    public void run() throws Exception {
+        seedHistory();
+
+        List<PhaseResult> results = new ArrayList<>();
+        results.add(runPhase("trmnl", Map.of(Scenario.TRMNL, 1), false));
+        results.add(runPhase("today", Map.of(Scenario.TODAY, 1), false));
+        results.add(runPhase("history", Map.of(Scenario.HISTORY, 1), false));
+        results.add(runPhase("mixed", Map.of(Scenario.TRMNL, 60, Scenario.TODAY, 30, Scenario.HISTORY, 10), true));
+
+        writeReport(results);
+
+        for (PhaseResult result : results) {
+            for (EndpointResult endpoint : result.endpoints()) {
+                Assertions.assertTrue(endpoint.requests() > 0, "No requests completed for " + result.phase() + "/" + endpoint.endpoint());
+            }
+        }
+    }
+
+    private void seedHistory() {
+        byte[] image = StubWikipediaServer.syntheticJpeg(2400, 1600, 7);
+        LocalDate today = LocalDate.now();
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay.deleteAll();
+            for (int i = 0; i <= HISTORY_DAYS; i++) {
+                PictureOfTheDay potd = new PictureOfTheDay();
+                potd.date = today.minusDays(i);
+                potd.description = "Seeded picture " + i;
+                potd.shortDescription = "Seeded";
+                potd.credit = "Load Test";
+                potd.imageUrl = "http://seed.invalid/" + i + ".jpg";
+                potd.originalImage = image;
+                potd.createdAt = LocalDateTime.now();
+                potd.persist();
+            }
+        });
+    }
+
+    private PhaseResult runPhase(String phase, Map<Scenario, Integer> weights, boolean withScrapes) throws Exception {
+        Scenario[] wheel = weightedWheel(weights);
+        Map<Scenario, LatencyRecorder> recorders = new LinkedHashMap<>();
+        weights.keySet().forEach(s -> recorders.put(s, new LatencyRecorder()));
+        LatencyRecorder scrapes = new LatencyRecorder();
+
+        AtomicBoolean recording = new AtomicBoolean(false);
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(PHASE_SECONDS);
+
+        ResourceSampler sampler = new ResourceSampler();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < end) {
+                        Scenario scenario = wheel[random.nextInt(wheel.length)];
+                        long start = System.nanoTime();
+                        boolean ok = get(scenario.path(random));
+                        if (recording.get()) {
+                            recorders.get(scenario).record(System.nanoTime() - start, ok);
+                        }
+                    }
+                    return null;
+                });
+            }
+            if (withScrapes) {
+                executor.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        long start = System.nanoTime();
+                        boolean ok = scrape();
+                        if (recording.get()) {
+                            scrapes.record(System.nanoTime() - start, ok);
+                        }
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(SCRAPE_INTERVAL_SECONDS));
+                    }
+                    return null;
+                });
+            }
+
+            TimeUnit.NANOSECONDS.sleep(warmupEnd - System.nanoTime());
+            recording.set(true);
+            sampler.start();
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, end - System.nanoTime()));
+            recording.set(false);
+            sampler.stop();
+        }
+
+        List<EndpointResult> endpoints = new ArrayList<>();
+        recorders.forEach((scenario, recorder) -> endpoints.add(EndpointResult.of(scenario.label, recorder.snapshot(), sampler)));
+        if (withScrapes) {
+            endpoints.add(EndpointResult.of("POST /api/potd/scrape", scrapes.snapshot(), sampler));
+        }
+        return new PhaseResult(phase, CLIENTS, PHASE_SECONDS, endpoints);
+    }
+
+    private boolean get(String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl.toString()).resolve(path))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            return response.statusCode() < 400;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean scrape() {
+        // The scraper inserts a row for today; drop the existing one so every scrape does real work
+        QuarkusTransaction.requiringNew().run(() -> PictureOfTheDay.delete("date", LocalDate.now()));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl.toString()).resolve("/api/potd/scrape"))
+                .timeout(Duration.ofMinutes(2))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Scenario[] weightedWheel(Map<Scenario, Integer> weights) {
+        List<Scenario> wheel = new ArrayList<>();
+        weights.forEach((scenario, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                wheel.add(scenario);
+            }
+        });
+        return wheel.toArray(new Scenario[0]);
+    }
+
+    private void writeReport(List<PhaseResult> results) throws IOException {
+        Files.createDirectories(REPORT_DIR);
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(REPORT_DIR.resolve("loadtest-report.json").toFile(), results);
+
+        StringBuilder md = new StringBuilder();
+        md.append("| phase | endpoint | requests | errors | req/s | p50 ms | p99 ms | p999 ms | max ms | cpu % | heap avg MB | heap peak MB |\n");
+        md.append("|---|---|---|---|---|---|---|---|---|---|---|---|\n");
+        for (PhaseResult result : results) {
+            for (EndpointResult e : result.endpoints()) {
+                md.append(String.format(Locale.ROOT, "| %s | %s | %d | %d | %.1f | %.1f | %.1f | %.1f | %.1f | %.0f | %d | %d |%n",
+                        result.phase(), e.endpoint(), e.requests(), e.errors(), e.throughput(),
+                        e.p50Ms(), e.p99Ms(), e.p999Ms(), e.maxMs(), e.cpuPercent(), e.heapAvgMb(), e.heapPeakMb()));
+            }
+        }
+        Path report = REPORT_DIR.resolve("loadtest-report.md");
+        Files.writeString(report, md);
+        Log.infof("Load test report written to %s", report.toAbsolutePath());
+    }
+
+    enum Scenario {
+        TRMNL("GET /api/potd/today/trmnl"),
+        TODAY("GET /api/potd/today"),
+        HISTORY("GET /api/potd/{date}/{width}/image");
+
+        final String label;
+
+        Scenario(String label) {
+            this.label = label;
+        }
+
+        String path(ThreadLocalRandom random) {
+            return switch (this) {
+                case TRMNL -> "/api/potd/today/trmnl";
+                case TODAY -> "/api/potd/today";
+                case HISTORY -> "/api/potd/" + LocalDate.now().minusDays(1 + random.nextInt(HISTORY_DAYS))
+                        + "/" + HISTORY_WIDTHS[random.nextInt(HISTORY_WIDTHS.length)] + "/image";
+            };
+        }
+    }
+
+    record PhaseResult(String phase, int clients, int durationSeconds, List<EndpointResult> endpoints) {
+    }
+
+    record EndpointResult(String endpoint, long requests, long errors, double throughput,
+                          double p50Ms, double p99Ms, double p999Ms, double maxMs,
+                          double cpuPercent, long heapAvgMb, long heapPeakMb) {
+
+        static EndpointResult of(String endpoint, LatencyRecorder.Snapshot snapshot, ResourceSampler sampler) {
+            return new EndpointResult(endpoint, snapshot.count(), snapshot.errors(),
+                    snapshot.count() / (double) PHASE_SECONDS,
+                    snapshot.percentileMillis(0.50), snapshot.percentileMillis(0.99), snapshot.percentileMillis(0.999),
+                    snapshot.maxMillis(), sampler.cpuPercent(), sampler.heapAvgMb(), sampler.heapPeakMb());
+        }
+    }
+
+    /**
+     * Samples process CPU time and heap usage while a phase is recording.
+     */
+    static final class ResourceSampler {
+        private final com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private volatile boolean running;
+        private Thread thread;
+        private long cpuStart;
+        private long wallStart;
+        private long cpuNanos;
+        private long wallNanos;
+        private long heapSum;
+        private long heapSamples;
+        private long heapPeak;
+
+        void start() {
+            cpuStart = os.getProcessCpuTime();
+            wallStart = System.nanoTime();
+            running = true;
+            thread = Thread.ofPlatform().daemon().name("loadtest-sampler").start(() -> {
+                while (running) {
+                    long used = memory.getHeapMemoryUsage().getUsed();
+                    heapSum += used;
+                    heapSamples++;
+                    heapPeak = Math.max(heapPeak, used);
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+            cpuNanos = os.getProcessCpuTime() - cpuStart;
+            wallNanos = System.nanoTime() - wallStart;
+        }
+
+        double cpuPercent() {
+            return wallNanos == 0 ? 0 : 100.0 * cpuNanos / wallNanos / Runtime.getRuntime().availableProcessors();
+        }
+
+        long heapAvgMb() {
+            return heapSamples == 0 ? 0 : heapSum / heapSamples / (1024 * 1024);
+        }
+
+        long heapPeakMb() {
+            return heapPeak / (1024 * 1024);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package dev.sf13.loadtest;
+
+import io.quarkus.test.junit.QuarkusTestProfile;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Boots the application against the local stubs. Uses the in-memory H2 database unless
+ * {@code -Ploadtest.jdbc-url=...} points it at a (disposable!) local Postgres.
+ */
+public class LoadTestProfile implements QuarkusTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        Map<String, String> config = new HashMap<>();
+        config.put("quarkus.otel.sdk.disabled", "true");
+        // Per-request INFO logging would otherwise flood the Gradle console
+        config.put("quarkus.log.console.level", "WARN");
+
+        String jdbcUrl = System.getProperty("loadtest.jdbc-url");
+        if (jdbcUrl != null) {
+            config.put("quarkus.datasource.db-kind", "postgresql");
+            config.put("quarkus.datasource.jdbc.url", jdbcUrl);
+            config.put("quarkus.datasource.username", System.getProperty("loadtest.jdbc-user", "quarkus"));
+            config.put("quarkus.datasource.password", System.getProperty("loadtest.jdbc-password", "quarkus"));
+        }
+        return config;
+    }
+
+    @Override
+    public Set<Class<?>> getEnabledAlternatives() {
+        return Set.of(StubDescriptionAiService.class);
+    }
+
+    @Override
+    public List<TestResourceEntry> testResources() {
+        return List.of(new TestResourceEntry(StubWikipediaServer.class));
+    }
+
+    @Override
+    public String getConfigProfile() {
+        return "loadtest";
+    }
+}
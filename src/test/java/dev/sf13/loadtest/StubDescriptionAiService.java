@@ -0,0 +1,27 @@
+package dev.sf13.loadtest;
+
+import dev.sf13.service.DescriptionAiService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+
+/**
+ * Stand-in for the Gemini backed summarizer. It only sleeps for a fixed latency so scrapes
+ * triggered by the load test cost roughly what a real LLM round-trip would, without the bill.
+ * Enabled by {@link LoadTestProfile} only.
+ */
+@Alternative
+@ApplicationScoped
+public class StubDescriptionAiService implements DescriptionAiService {
+
+    static final long LATENCY_MS = Long.getLong("loadtest.ai-latency-ms", 300);
+
+    @Override
+    public String summarize(String text) {
+        try {
+            Thread.sleep(LATENCY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "Stub summary of a " + text.length() + " character description.";
+    }
+}
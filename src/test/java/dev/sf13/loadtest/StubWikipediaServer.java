@@ -0,0 +1,128 @@
+package dev.sf13.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local replacement for the main pages of all picture of the day sources and upload.wikimedia.org.
+ * <p>
+ * Every main page fetch advertises a new file name so each scrape misses the
+ * {@code findByImageUrl} dedup and goes through the full download/dither/summarize path.
+ * Any path under {@code /upload/} returns the same synthetic JPEG.
+ */
+public class StubWikipediaServer implements QuarkusTestResourceLifecycleManager {
+
+    static final int IMAGE_WIDTH = Integer.getInteger("loadtest.source-width", 4000);
+    static final int IMAGE_HEIGHT = Integer.getInteger("loadtest.source-height", 2667);
+    static final List<String> SOURCES = List.of("en", "de", "fr", "commons");
+
+    private final AtomicInteger pageCounter = new AtomicInteger();
+    private HttpServer server;
+    private byte[] image;
+
+    @Override
+    public Map<String, String> start() {
+        image = syntheticJpeg(IMAGE_WIDTH, IMAGE_HEIGHT, 42);
+        try {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        // /wiki/{source}/Main_Page
+        server.createContext("/wiki/", this::mainPage);
+        server.createContext("/upload/", this::upload);
+        server.start();
+
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        Map<String, String> config = new HashMap<>();
+        for (String source : SOURCES) {
+            config.put("wikipedia.sources." + source + ".url", base + "/wiki/" + source + "/Main_Page");
+            config.put("wikipedia.sources." + source + ".container", "#mp-tfp");
+            config.put("wikipedia.sources." + source + ".max-retries", "0");
+        }
+        return config;
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private void mainPage(HttpExchange exchange) throws IOException {
+        int n = pageCounter.incrementAndGet();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        String name = "LoadTest_" + n + ".jpg";
+        String html = "<html><body><div id=\"mp-tfp\"><table><tbody><tr>"
+                + "<td><a href=\"/wiki/File:" + name + "\"><img src=\"" + base + "/upload/thumb/a/ab/" + name + "/300px-" + name + "\"></a></td>"
+                + "<td><p>A synthetic featured picture number " + n + " used to exercise the ingest pipeline under load.</p>"
+                + "<p>Photograph credit: Load Test</p></td>"
+                + "</tr></tbody></table></div></body></html>";
+        respond(exchange, "text/html; charset=UTF-8", html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void upload(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            // No Accept-Ranges: the downloader falls back to a plain GET
+            exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(image.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        respond(exchange, "image/jpeg", image);
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Photo-like test image: gradients plus noise so JPEG/PNG codecs and the ditherer
+     * do comparable work to a real featured picture.
+     */
+    static byte[] syntheticJpeg(int width, int height, long seed) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(20, 60, 140), width, height, new Color(240, 200, 90)));
+        g.fillRect(0, 0, width, height);
+        Random random = new Random(seed);
+        for (int i = 0; i < 400; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), 90));
+            g.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(width / 4), 20 + random.nextInt(height / 4));
+        }
+        g.dispose();
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ImageIO.write(img, "jpg", baos);
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
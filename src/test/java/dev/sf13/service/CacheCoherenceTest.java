@@ -0,0 +1,65 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.CacheInvalidation;
+import dev.sf13.entity.CacheVersion;
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+
+@QuarkusTest
+public class CacheCoherenceTest {
+
+    @Inject
+    CacheCoherence cacheCoherence;
+
+    @Test
+    public void testPublishedChangeEvictsCachedEntries() {
+        LocalDate date = LocalDate.now().minusDays(40);
+        QuarkusTransaction.requiringNew().run(() -> PictureOfTheDay.delete("date", date));
+
+        // A miss is cached too
+        given()
+            .when().get("/api/potd/" + date)
+            .then()
+            .statusCode(204);
+
+        // Written by "another replica": the change plus its invalidation record
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay potd = new PictureOfTheDay();
+            potd.date = date;
+            potd.imageUrl = "http://example.com/coherence.png";
+            potd.description = "Fresh";
+            potd.persist();
+            cacheCoherence.publish(date);
+        });
+
+        cacheCoherence.poll();
+
+        given()
+            .when().get("/api/potd/" + date)
+            .then()
+            .statusCode(200)
+            .body("description", is("Fresh"));
+    }
+
+    @Test
+    public void testPublishStampsConsecutiveVersions() {
+        LocalDate date = LocalDate.now().minusDays(41);
+        long before = QuarkusTransaction.requiringNew().call(CacheVersion::latest);
+
+        QuarkusTransaction.requiringNew().run(() -> cacheCoherence.publish("en", date));
+        QuarkusTransaction.requiringNew().run(() -> cacheCoherence.publish("de", date));
+
+        Assertions.assertEquals(before + 2, QuarkusTransaction.requiringNew().call(CacheVersion::latest));
+        Assertions.assertEquals("de", QuarkusTransaction.requiringNew().call(() ->
+                CacheInvalidation.<CacheInvalidation>find("version", before + 2).firstResult().source));
+    }
+}
@@ -17,6 +17,9 @@ public class ImageServiceTest {
     @Inject
     SvgConverter svgConverter;
 
+    @Inject
+    ImagePipelineMetrics pipelineMetrics;
+
     @Test
     public void testSvgDetectionAndConversion() throws IOException {
         // Create a simple SVG
@@ -41,4 +44,63 @@ public class ImageServiceTest {
 
         Assertions.assertFalse(svgConverter.isSvg(pngBytes), "Should not detect PNG as SVG");
     }
+
+    @Test
+    public void testDitheringIsDeterministic() throws IOException {
+        java.awt.image.BufferedImage img = new java.awt.image.BufferedImage(64, 48, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D g = img.createGraphics();
+        g.setPaint(new java.awt.GradientPaint(0, 0, java.awt.Color.BLACK, 64, 48, java.awt.Color.WHITE));
+        g.fillRect(0, 0, 64, 48);
+        g.dispose();
+        java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(img, "png", baos);
+        byte[] source = baos.toByteArray();
+
+        byte[] first = imageService.ditherImage(source);
+        byte[] second = imageService.ditherImage(source);
+
+        Assertions.assertArrayEquals(first, second, "Same input must dither to identical bytes");
+    }
+
+    @Test
+    public void testWorkingMasterCapsLongEdge() throws IOException {
+        java.awt.image.BufferedImage img = new java.awt.image.BufferedImage(4000, 1000, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(img, "jpg", baos);
+        byte[] large = baos.toByteArray();
+
+        byte[] master = imageService.createWorkingMaster(large, pipelineMetrics.unspecified());
+        java.awt.Dimension size = imageService.readDimensions(master);
+        Assertions.assertEquals(2560, size.width);
+        Assertions.assertEquals(640, size.height);
+
+        byte[] small = imageService.scaleImage(large, 800, null);
+        Assertions.assertNull(imageService.createWorkingMaster(small, pipelineMetrics.unspecified()), "Small originals are their own master");
+    }
+
+    @Test
+    public void testPerceptualHashSurvivesRescaling() throws IOException {
+        java.awt.image.BufferedImage img = new java.awt.image.BufferedImage(640, 480, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D g = img.createGraphics();
+        g.setPaint(new java.awt.GradientPaint(0, 0, java.awt.Color.BLUE, 640, 0, java.awt.Color.YELLOW));
+        g.fillRect(0, 0, 640, 480);
+        g.setColor(java.awt.Color.BLACK);
+        g.fillOval(200, 100, 240, 240);
+        g.dispose();
+        java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(img, "png", baos);
+        byte[] original = baos.toByteArray();
+
+        long hash = imageService.perceptualHash(original);
+        long thumbnailHash = imageService.perceptualHash(imageService.scaleImage(original, 160, null));
+        Assertions.assertTrue(Long.bitCount(hash ^ thumbnailHash) <= 3, "Rescaled copy should hash (nearly) the same");
+
+        java.awt.image.BufferedImage flipped = new java.awt.image.BufferedImage(640, 480, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D fg = flipped.createGraphics();
+        fg.drawImage(img, 640, 0, -640, 480, null);
+        fg.dispose();
+        baos.reset();
+        javax.imageio.ImageIO.write(flipped, "png", baos);
+        Assertions.assertTrue(Long.bitCount(hash ^ imageService.perceptualHash(baos.toByteArray())) > 10, "A different picture should not match");
+    }
 }
@@ -0,0 +1,56 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+@QuarkusTest
+public class IngestBackfillTest {
+
+    @Inject
+    IngestBackfill backfill;
+
+    @Test
+    public void testOnlyUncheckedPicturesAreBackfilled() throws IOException {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(3, 5, 0xFFFFFF);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        byte[] png = out.toByteArray();
+        LocalDate unchecked = LocalDate.now().minusDays(70);
+        LocalDate checked = unchecked.minusDays(1);
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay.delete("date in ?1", List.of(unchecked, checked));
+            for (LocalDate date : new LocalDate[]{unchecked, checked}) {
+                PictureOfTheDay potd = new PictureOfTheDay();
+                potd.date = date;
+                potd.imageUrl = "http://example.com/backfill-" + date + ".png";
+                potd.originalImage = png;
+                potd.masterChecked = date.equals(checked);
+                potd.persist();
+            }
+        });
+        try {
+            backfill.run();
+
+            PictureOfTheDay done = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate(unchecked));
+            Assertions.assertTrue(done.masterChecked);
+            Assertions.assertNotNull(done.perceptualHash);
+            // Already checked rows are not selected again
+            PictureOfTheDay skipped = QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.findByDate(checked));
+            Assertions.assertNull(skipped.perceptualHash);
+        } finally {
+            QuarkusTransaction.requiringNew().run(() -> PictureOfTheDay.delete("date in ?1", List.of(unchecked, checked)));
+        }
+    }
+}
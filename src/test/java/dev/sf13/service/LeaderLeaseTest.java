@@ -0,0 +1,57 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.SchedulerLease;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+@QuarkusTest
+public class LeaderLeaseTest {
+
+    private static final String LEASE = "test-lease";
+
+    @Inject
+    LeaderLease lease;
+
+    @BeforeEach
+    void setup() {
+        QuarkusTransaction.requiringNew().run(() -> SchedulerLease.deleteById(LEASE));
+    }
+
+    @Test
+    public void testOnlyOneHolder() {
+        Assertions.assertTrue(lease.tryAcquire(LEASE), "Free lease is acquired");
+        Assertions.assertTrue(lease.tryAcquire(LEASE), "Holder renews its own lease");
+
+        // Another replica holds an unexpired lease
+        setHolder("other-replica", Instant.now().plusSeconds(600));
+        Assertions.assertFalse(lease.tryAcquire(LEASE));
+
+        // ... until it expires
+        setHolder("other-replica", Instant.now().minusSeconds(1));
+        Assertions.assertTrue(lease.tryAcquire(LEASE), "Expired lease is taken over");
+        String holder = QuarkusTransaction.requiringNew().call(() -> SchedulerLease.<SchedulerLease>findById(LEASE).holder);
+        Assertions.assertEquals(lease.instanceId(), holder);
+    }
+
+    @Test
+    public void testRelease() {
+        Assertions.assertTrue(lease.tryAcquire(LEASE));
+        lease.release(LEASE);
+        setHolder("other-replica", Instant.now().minusSeconds(1));
+        Assertions.assertTrue(lease.tryAcquire(LEASE));
+    }
+
+    private void setHolder(String holder, Instant expiresAt) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            SchedulerLease row = SchedulerLease.findById(LEASE);
+            row.holder = holder;
+            row.expiresAt = expiresAt;
+        });
+    }
+}
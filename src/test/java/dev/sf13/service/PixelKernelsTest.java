@@ -0,0 +1,69 @@
+package dev.sf13.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+public class PixelKernelsTest {
+
+    @Test
+    public void testVectorKernelsMatchScalar() {
+        PixelKernels scalar = PixelKernels.scalar();
+        PixelKernels best = PixelKernels.best();
+        Random random = new Random(7);
+
+        // Odd length so both the vector loop and the tail run
+        int length = 1021;
+        int[] rgb = new int[length];
+        for (int i = 0; i < length; i++) {
+            rgb[i] = random.nextInt();
+        }
+        rgb[0] = 0xFFFFFF;
+        rgb[1] = 0;
+        float[] expectedLuma = new float[length + 3];
+        float[] actualLuma = new float[length + 3];
+        scalar.luma(rgb, expectedLuma, 3, length);
+        best.luma(rgb, actualLuma, 3, length);
+        Assertions.assertArrayEquals(expectedLuma, actualLuma, 0f);
+
+        float[] thresholds = new float[length];
+        for (int i = 0; i < length; i++) {
+            thresholds[i] = random.nextFloat() * 40 - 20;
+        }
+        for (int bitDepth : new int[]{1, 2, 4}) {
+            int maxIndex = (1 << bitDepth) - 1;
+            float step = 255f / maxIndex;
+            int[] expected = new int[length];
+            int[] actual = new int[length];
+            scalar.quantize(expectedLuma, 3, thresholds, expected, length, step, maxIndex);
+            best.quantize(actualLuma, 3, thresholds, actual, length, step, maxIndex);
+            Assertions.assertArrayEquals(expected, actual, "bit depth " + bitDepth);
+        }
+    }
+
+    @Test
+    public void testDitherIsIdenticalWithAndWithoutSimd() {
+        BufferedImage image = new BufferedImage(203, 61, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(11);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(1 << 24));
+            }
+        }
+        GrayscaleDitherer scalar = new GrayscaleDitherer();
+        scalar.kernels = PixelKernels.scalar();
+        GrayscaleDitherer best = new GrayscaleDitherer();
+        best.kernels = PixelKernels.best();
+
+        for (DitherAlgorithm algorithm : DitherAlgorithm.values()) {
+            for (int bitDepth : new int[]{1, 2, 4}) {
+                Assertions.assertArrayEquals(
+                        GrayscaleDitherer.packedPixels(scalar.dither(image, bitDepth, algorithm, 5L)),
+                        GrayscaleDitherer.packedPixels(best.dither(image, bitDepth, algorithm, 5L)),
+                        algorithm + " " + bitDepth + " bits");
+            }
+        }
+    }
+}
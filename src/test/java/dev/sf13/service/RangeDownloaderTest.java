@@ -0,0 +1,222 @@
+package dev.sf13.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Runs {@link RangeDownloader} against a local server that honours Range/If-Range and can be
+ * told to fail individual chunks.
+ */
+public class RangeDownloaderTest {
+
+    private static final int CHUNK = 64 * 1024;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private byte[] body;
+    private volatile String sha1;
+    private volatile boolean acceptRanges = true;
+    private final Set<Long> failOnce = ConcurrentHashMap.newKeySet();
+    private final Map<Long, AtomicInteger> rangeRequests = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> rangesInProgress = new ConcurrentHashMap<>();
+    private final AtomicInteger maxRangesInProgress = new AtomicInteger();
+    private RangeDownloader downloader;
+
+    @BeforeEach
+    void setup() throws Exception {
+        // Not a multiple of the chunk size, so the last chunk is short
+        body = new byte[10 * CHUNK + 123];
+        new Random(3).nextBytes(body);
+        sha1 = new BigInteger(1, MessageDigest.getInstance("SHA-1").digest(body)).toString(36);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/upload/", this::serve);
+        server.start();
+
+        downloader = new RangeDownloader();
+        downloader.userAgent = "test";
+        downloader.minSize = 1;
+        downloader.chunkSize = CHUNK;
+        downloader.parallelism = 4;
+        downloader.chunkRetries = 0;
+        downloader.timeout = Duration.ofSeconds(30);
+        downloader.dir = Optional.of(dir.toString());
+        downloader.keep = Duration.ofDays(1);
+        downloader.registry = new SimpleMeterRegistry();
+        downloader.init();
+    }
+
+    @AfterEach
+    void teardown() {
+        server.stop(0);
+        downloader.shutdown();
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/upload/a/ab/Large.tif";
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("ETag", "\"v1\"");
+        exchange.getResponseHeaders().set("X-Object-Meta-Sha1base36", sha1);
+        if (acceptRanges) {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        }
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        Matcher matcher = range == null ? null : RANGE.matcher(range);
+        if (matcher == null || !matcher.matches() || !"\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+            send(exchange, 200, body, 0, body.length);
+            return;
+        }
+        long start = Long.parseLong(matcher.group(1));
+        int end = (int) Math.min(Long.parseLong(matcher.group(2)), body.length - 1);
+        rangeRequests.computeIfAbsent(start, s -> new AtomicInteger()).incrementAndGet();
+        if (failOnce.remove(start)) {
+            send(exchange, 503, new byte[0], 0, 0);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + body.length);
+        AtomicInteger inProgress = rangesInProgress.computeIfAbsent(start, s -> new AtomicInteger());
+        maxRangesInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+        try {
+            send(exchange, 206, body, (int) start, end - (int) start + 1);
+        } finally {
+            inProgress.decrementAndGet();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] data, int offset, int length) throws IOException {
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data, offset, length);
+        }
+    }
+
+    @Test
+    public void testParallelRangesAssembleTheFile() throws IOException {
+        byte[] downloaded = downloader.download(url());
+
+        Assertions.assertArrayEquals(body, downloaded);
+        Assertions.assertEquals(11, rangeRequests.size());
+        rangeRequests.values().forEach(count -> Assertions.assertEquals(1, count.get()));
+        assertNoPartialFiles();
+    }
+
+    @Test
+    public void testConcurrentDownloadsOfTheSameFileRunOneAfterTheOther() {
+        List<CompletableFuture<byte[]>> downloads = Stream.generate(() -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return downloader.download(url());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        })).limit(3).toList();
+
+        downloads.forEach(download -> Assertions.assertArrayEquals(body, download.join()));
+        // Never two requests for the same range of the shared partial file at once
+        Assertions.assertEquals(1, maxRangesInProgress.get());
+        rangeRequests.values().forEach(count -> Assertions.assertEquals(3, count.get()));
+        assertNoPartialFiles();
+    }
+
+    @Test
+    public void testFailedDownloadResumesOnlyMissingChunks() throws IOException {
+        failOnce.add(3L * CHUNK);
+
+        Assertions.assertThrows(IOException.class, () -> downloader.download(url()));
+
+        byte[] downloaded = downloader.download(url());
+
+        Assertions.assertArrayEquals(body, downloaded);
+        Assertions.assertTrue(downloader.registry.get("image.download.chunk.resumed").counter().count() >= 3);
+        // Chunks that completed in the first attempt were not fetched again
+        Assertions.assertEquals(11, rangeRequests.size());
+        rangeRequests.forEach((start, count) -> {
+            int expected = start == 3L * CHUNK ? 2 : 1;
+            Assertions.assertEquals(expected, count.get(), "requests for chunk at " + start);
+        });
+        Assertions.assertEquals(1.0, downloader.registry.get("image.download.range").tag("result", "verified").counter().count());
+        assertNoPartialFiles();
+    }
+
+    @Test
+    public void testChunkRetriesWithinOneDownload() throws IOException {
+        downloader.chunkRetries = 1;
+        failOnce.add(5L * CHUNK);
+
+        Assertions.assertArrayEquals(body, downloader.download(url()));
+        Assertions.assertEquals(2, rangeRequests.get(5L * CHUNK).get());
+        Assertions.assertEquals(1.0, downloader.registry.get("image.download.chunk.retries").counter().count());
+    }
+
+    @Test
+    public void testChecksumMismatchDiscardsTheDownload() {
+        sha1 = "1";
+
+        IOException e = Assertions.assertThrows(IOException.class, () -> downloader.download(url()));
+        Assertions.assertTrue(e.getMessage().contains("Checksum"), e.getMessage());
+        assertNoPartialFiles();
+    }
+
+    @Test
+    public void testServersWithoutRangesAreLeftToThePlainDownload() throws IOException {
+        acceptRanges = false;
+
+        Assertions.assertNull(downloader.download(url()));
+        Assertions.assertTrue(rangeRequests.isEmpty());
+    }
+
+    @Test
+    public void testSmallFilesAreLeftToThePlainDownload() throws IOException {
+        downloader.minSize = body.length + 1;
+
+        Assertions.assertNull(downloader.download(url()));
+        Assertions.assertTrue(rangeRequests.isEmpty());
+    }
+
+    private void assertNoPartialFiles() {
+        try (Stream<Path> files = Files.list(dir)) {
+            Assertions.assertEquals(0, files.count());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
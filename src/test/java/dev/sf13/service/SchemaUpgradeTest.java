@@ -0,0 +1,51 @@
+package dev.sf13.service;
+
+import dev.sf13.entity.PictureOfTheDay;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+@QuarkusTest
+public class SchemaUpgradeTest {
+
+    @Inject
+    SchemaUpgrade schemaUpgrade;
+
+    @Test
+    public void testLegacyDateConstraintIsDropped() {
+        LocalDate date = LocalDate.now().minusDays(60);
+        QuarkusTransaction.requiringNew().run(() -> {
+            PictureOfTheDay.delete("date", date);
+            // What databases created before sources existed still have
+            PictureOfTheDay.getEntityManager()
+                    .createNativeQuery("alter table picture_of_the_day add constraint uk_legacy_potd_date unique (date)")
+                    .executeUpdate();
+        });
+        try {
+            schemaUpgrade.dropLegacyDateConstraint();
+
+            // Two sources on the same day
+            for (String source : new String[]{"en", "de"}) {
+                QuarkusTransaction.requiringNew().run(() -> {
+                    PictureOfTheDay potd = new PictureOfTheDay();
+                    potd.source = source;
+                    potd.date = date;
+                    potd.imageUrl = "http://example.com/" + source + ".png";
+                    potd.persist();
+                });
+            }
+            Assertions.assertEquals(2L, QuarkusTransaction.requiringNew().call(() -> PictureOfTheDay.count("date", date)));
+        } finally {
+            QuarkusTransaction.requiringNew().run(() -> {
+                PictureOfTheDay.delete("date", date);
+                PictureOfTheDay.getEntityManager()
+                        .createNativeQuery("alter table picture_of_the_day drop constraint if exists uk_legacy_potd_date")
+                        .executeUpdate();
+            });
+        }
+    }
+}